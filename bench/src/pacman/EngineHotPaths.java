@@ -0,0 +1,298 @@
+package pacman;
+
+import java.awt.Graphics2D;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+// JMH benchmarks of the engine hot paths, the same work EngineBenchmark times. Run with the GC profiler for
+// allocation per operation:
+//
+//   mvn package && java -jar bench/target/benchmarks.jar -prof gc
+//
+// Each state sets up only the engine its benchmarks need, once per trial, and releases any threads or files
+// it holds when the trial ends. Operations that take nanoseconds run in batches over varying inputs, as
+// they do in EngineBenchmark.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class EngineHotPaths {
+    private static final int BATCH = 1024;
+    private static final int TILE_SIZE = EngineBenchmark.TILE_SIZE;
+    private static final int WIDTH = EngineBenchmark.WIDTH;
+    private static final int HEIGHT = EngineBenchmark.HEIGHT;
+    private static final long SEED = EngineBenchmark.SEED;
+
+    // A game ticking with a given number of ghosts, moved by a gang of worker threads if threads > 1;
+    // a new game starts whenever one ends.
+    @State(Scope.Thread)
+    public static class Update {
+        @Param({"4", "64", "1024", "16384"})
+        public int ghosts;
+        @Param({"1"})
+        public int threads;
+
+        GameEngine engine;
+        WorkerGang gang;
+        long games;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            engine = new GameEngine(WIDTH, HEIGHT, SEED, ghosts);
+            if (threads > 1) {
+                gang = new WorkerGang(threads, "benchmark-ghosts");
+                engine.setGhostGang(gang);
+            }
+            engine.reset(SEED); // Sets aside the reset scratch space up front.
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            if (gang != null) {
+                gang.close();
+            }
+        }
+    }
+
+    // Pixel positions spread over the maze, to test against the walls.
+    @State(Scope.Thread)
+    public static class Walls {
+        GameEngine engine;
+        int[] probes;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            engine = new GameEngine(WIDTH, HEIGHT, SEED);
+            probes = EngineBenchmark.pixelProbes(engine, BATCH);
+        }
+    }
+
+    // A game whose ghosts have all left the house.
+    @State(Scope.Thread)
+    public static class Ghosts {
+        final int[] possibleDx = {1, -1, 0, 0};
+        final int[] possibleDy = {0, 0, 1, -1};
+        final int[] scores = new int[4];
+        GameEngine engine;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            engine = EngineBenchmark.releasedGhosts(new GameEngine(WIDTH, HEIGHT, SEED));
+        }
+    }
+
+    // Ghosts scattered over the maze, none touching Pacman; the cost should not depend on how many there are.
+    @State(Scope.Thread)
+    public static class Collisions {
+        @Param({"4", "4096"})
+        public int ghosts;
+
+        GameEngine engine;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            engine = EngineBenchmark.scatteredGhosts(new GameEngine(WIDTH, HEIGHT, SEED, ghosts));
+        }
+    }
+
+    // Pacman stuck in the middle of the wall block above the ghost house, a few tiles from open space.
+    @State(Scope.Thread)
+    public static class Snap {
+        GameEngine engine;
+        int stuckX;
+        int stuckY;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            engine = new GameEngine(WIDTH, HEIGHT, SEED);
+            stuckX = engine.getXOffset() + 13 * TILE_SIZE;
+            stuckY = engine.getYOffset() + 6 * TILE_SIZE;
+        }
+    }
+
+    // The seed of the next engine to construct.
+    @State(Scope.Thread)
+    public static class Construct {
+        long seed = SEED;
+    }
+
+    // A game in progress and a buffer holding its snapshot.
+    @State(Scope.Thread)
+    public static class Snapshot {
+        GameEngine engine;
+        ByteBuffer buffer;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            engine = EngineBenchmark.gameInProgress(new GameEngine(WIDTH, HEIGHT, SEED));
+            buffer = ByteBuffer.allocateDirect(engine.getSnapshotSize()).order(ByteOrder.LITTLE_ENDIAN);
+            engine.saveSnapshot(buffer);
+        }
+    }
+
+    // A game in progress and a checkpoint in a temporary file, deleted when the trial ends.
+    @State(Scope.Thread)
+    public static class Checkpointed {
+        GameEngine engine;
+        Path file;
+        Checkpoint checkpoint;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            engine = EngineBenchmark.gameInProgress(new GameEngine(WIDTH, HEIGHT, SEED));
+            file = EngineBenchmark.temporaryFile("checkpoint");
+            checkpoint = EngineBenchmark.openCheckpoint(file, engine);
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws IOException {
+            checkpoint.close();
+            Files.deleteIfExists(file);
+        }
+    }
+
+    // A game in progress and an offscreen image to draw it into. The game does not move, so the benchmark
+    // times drawing alone.
+    @State(Scope.Thread)
+    public static class Draw {
+        GameEngine engine;
+        Graphics2D g;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            engine = EngineBenchmark.gameInProgress(new GameEngine(WIDTH, HEIGHT, SEED));
+            g = EngineBenchmark.offscreenGraphics();
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            g.dispose();
+        }
+    }
+
+    @Benchmark
+    public long update(Update state) {
+        GameEngine engine = state.engine;
+        // Turn every half second so Pacman keeps moving through the maze.
+        int dir = (int) ((engine.getTickCount() / 15) & 3);
+        engine.step(MazeTopology.DIR_X[dir], MazeTopology.DIR_Y[dir]);
+        long ticks = engine.getTickCount();
+        if (engine.isFinished()) {
+            engine.reset(SEED + ++state.games);
+        }
+        return ticks;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public long collidesWithWalls(Walls state) {
+        int[] probes = state.probes;
+        long hits = 0;
+        for (int p = 0; p < probes.length; p += 2) {
+            if (state.engine.collidesWithWalls(probes[p], probes[p + 1], TILE_SIZE, TILE_SIZE)) {
+                hits++;
+            }
+        }
+        return hits;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public long moveSingleGhost(Ghosts state) {
+        GameEngine engine = state.engine;
+        GhostPool pool = engine.getGhostPool();
+        long sum = 0;
+        for (int i = 0; i < BATCH; i++) {
+            engine.moveSingleGhost(i & 3);
+            sum += pool.getX(i & 3);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public long calculateGhostDirectionScores(Ghosts state) {
+        GameEngine engine = state.engine;
+        Ghost ghost = engine.getGhosts().get(0);
+        Pacman pacman = engine.getPacman();
+        int row = (ghost.getY() - engine.getYOffset()) / TILE_SIZE;
+        int col = (ghost.getX() - engine.getXOffset()) / TILE_SIZE;
+        int[] scores = state.scores;
+        long sum = 0;
+        for (int i = 0; i < BATCH; i++) {
+            engine.calculateGhostDirectionScores(0, pacman.getX(), pacman.getY(), row, col,
+                    ghost.getSpeed(), state.possibleDx, state.possibleDy, scores);
+            sum += scores[i & 3];
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public boolean checkPacmanGhostCollisions(Collisions state) {
+        state.engine.checkPacmanGhostCollisions();
+        return state.engine.isGameOver();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public long snapPacmanToNearestFree(Snap state) {
+        Pacman pacman = state.engine.getPacman();
+        long sum = 0;
+        for (int i = 0; i < BATCH; i++) {
+            pacman.setX(state.stuckX);
+            pacman.setY(state.stuckY);
+            state.engine.snapPacmanToNearestFree();
+            sum += pacman.getX();
+        }
+        return sum;
+    }
+
+    // Includes the breadth-first search that lays out the pellets.
+    @Benchmark
+    public GameEngine constructor(Construct state) {
+        return new GameEngine(WIDTH, HEIGHT, state.seed++);
+    }
+
+    @Benchmark
+    public int saveSnapshot(Snapshot state) {
+        state.buffer.clear();
+        state.engine.saveSnapshot(state.buffer);
+        return state.buffer.position();
+    }
+
+    @Benchmark
+    public long restoreSnapshot(Snapshot state) {
+        state.buffer.rewind();
+        state.engine.restoreSnapshot(state.buffer);
+        return state.engine.getTickCount();
+    }
+
+    @Benchmark
+    public void checkpointSave(Checkpointed state) {
+        state.checkpoint.save(state.engine);
+    }
+
+    @Benchmark
+    public void draw(Draw state) {
+        state.engine.draw(state.g, 0.5);
+    }
+}
@@ -0,0 +1,64 @@
+package pacman;
+
+import java.lang.management.ManagementFactory;
+
+// Checks the engine's no-garbage guarantee. Every EngineBenchmark operation marked allocation-free is warmed
+// up until the JIT has compiled it, then run for a while longer; the bytes the calling thread allocated over
+// those runs, read before and after, must be exactly zero. Set-up work an operation reports (such as
+// starting a new game when one ends) is subtracted, byte for byte. Exits with status 1 if any operation
+// allocated. mvn verify runs the same check as AllocationCheckIT.
+//
+// Usage: java pacman.AllocationCheck [filter] [measureMillis]
+public final class AllocationCheck {
+    // Warm-up runs at least this long and this many operations, so that escape analysis has had its chance
+    // on every hot path before a byte is counted.
+    private static final long WARMUP_MILLIS = 2000;
+    private static final long WARMUP_OPERATIONS = 50_000;
+    // Measured runs cover at least this many operations, whatever the duration.
+    private static final long MIN_OPERATIONS = 1000;
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private AllocationCheck() {
+    }
+
+    // Warms up and measures one operation; returns the bytes it allocated while measured.
+    static long allocatedBytes(EngineBenchmark.Benchmark benchmark, long measureMillis, long[] result) {
+        int batch = EngineBenchmark.batchSize(benchmark);
+        EngineBenchmark.runFor(benchmark, batch, WARMUP_MILLIS * 1_000_000L, WARMUP_OPERATIONS, result);
+
+        long thread = Thread.currentThread().getId();
+        long setupBefore = benchmark.operation.setupBytes();
+        long before = THREADS.getThreadAllocatedBytes(thread);
+        EngineBenchmark.runFor(benchmark, batch, measureMillis * 1_000_000L, MIN_OPERATIONS, result);
+        long after = THREADS.getThreadAllocatedBytes(thread);
+        return after - before - (benchmark.operation.setupBytes() - setupBefore);
+    }
+
+    public static void main(String[] args) {
+        String filter = args.length > 0 ? args[0] : "";
+        long measureMillis = args.length > 1 ? Long.parseLong(args[1]) : 1000;
+
+        long[] result = new long[2];
+        int failures = 0;
+        try (EngineBenchmark bench = new EngineBenchmark(measureMillis)) {
+            bench.defineBenchmarks();
+            for (EngineBenchmark.Benchmark benchmark : bench.getBenchmarks()) {
+                if (!benchmark.allocationFree || !benchmark.name.contains(filter)) {
+                    continue;
+                }
+                long allocated = allocatedBytes(benchmark, measureMillis, result);
+                System.out.printf("%-40s %12d ops %12d bytes%s%n", benchmark.name, result[0], allocated,
+                        allocated == 0 ? "" : "   ALLOCATES");
+                if (allocated != 0) {
+                    failures++;
+                }
+            }
+        }
+        if (failures > 0) {
+            System.out.println(failures + " allocation-free operations allocated");
+            System.exit(1);
+        }
+    }
+}
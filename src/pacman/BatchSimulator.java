@@ -0,0 +1,177 @@
+package pacman;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+// Plays many independent headless games in parallel and reports aggregate statistics.
+public class BatchSimulator {
+    // Tile size used for headless games; a multiple of 4 so sprites stay tile-aligned.
+    private static final int TILE_SIZE = 16;
+    private static final int WIDTH = Maze.COLS * TILE_SIZE;
+    private static final int HEIGHT = Maze.ROWS * TILE_SIZE;
+
+    // Games played sequentially by one task before it stops splitting.
+    private static final int GAMES_PER_TASK = 8;
+    // Average number of ticks between random direction changes of the scripted Pacman.
+    private static final int TURN_INTERVAL = 24;
+
+    private static final int[] DIR_X = {1, -1, 0, 0};
+    private static final int[] DIR_Y = {0, 0, 1, -1};
+
+    private final int games;
+    private final int maxTicks;
+    private final long seed;
+
+    // Constructs a simulator that plays the given number of games, each capped at maxTicks.
+    public BatchSimulator(int games, int maxTicks, long seed) {
+        this.games = games;
+        this.maxTicks = maxTicks;
+        this.seed = seed;
+    }
+
+    // Runs every game on the given pool and returns the combined result.
+    public Result run(ForkJoinPool pool) {
+        long start = System.nanoTime();
+        Result result = pool.invoke(new Batch(0, games));
+        result.elapsedNanos = System.nanoTime() - start;
+        return result;
+    }
+
+    // Plays a single game to completion (or the tick cap) with a randomly steering Pacman.
+    private Result playGame(int index) {
+        // Each game derives its engine seed and its steering from the batch seed, so batches are reproducible.
+        GameRandom random = new GameRandom(seed + index);
+        GameEngine engine = new GameEngine(WIDTH, HEIGHT, random.nextLong());
+        int dir = random.nextInt(4);
+        int ticks = 0;
+        while (!engine.isFinished() && ticks < maxTicks) {
+            Pacman pacman = engine.getPacman();
+            // Pick a new heading when blocked, and now and then at random.
+            if ((pacman.getDx() == 0 && pacman.getDy() == 0) || random.nextInt(TURN_INTERVAL) == 0) {
+                dir = random.nextInt(4);
+            }
+            engine.step(DIR_X[dir], DIR_Y[dir]);
+            ticks++;
+        }
+
+        Result result = new Result();
+        result.games = 1;
+        result.totalTicks = ticks;
+        result.minLength = ticks;
+        result.maxLength = ticks;
+        if (engine.isGameWon()) {
+            result.wins = 1;
+        } else if (engine.isGameOver()) {
+            result.losses = 1;
+        } else {
+            result.timeouts = 1;
+        }
+        return result;
+    }
+
+    // Splits a range of game indices across the fork-join pool.
+    private class Batch extends RecursiveTask<Result> {
+        private final int from;
+        private final int to;
+
+        Batch(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Result compute() {
+            if (to - from <= GAMES_PER_TASK) {
+                Result result = new Result();
+                for (int i = from; i < to; i++) {
+                    result.merge(playGame(i));
+                }
+                return result;
+            }
+            int mid = (from + to) >>> 1;
+            Batch left = new Batch(from, mid);
+            left.fork();
+            Result right = new Batch(mid, to).compute();
+            return left.join().merge(right);
+        }
+    }
+
+    // Aggregate outcome of a batch of games.
+    public static class Result {
+        private int games;
+        private int wins;
+        private int losses;
+        private int timeouts;
+        private long totalTicks;
+        private long minLength = Long.MAX_VALUE;
+        private long maxLength;
+        private long elapsedNanos;
+
+        // Folds another result into this one and returns this.
+        Result merge(Result other) {
+            games += other.games;
+            wins += other.wins;
+            losses += other.losses;
+            timeouts += other.timeouts;
+            totalTicks += other.totalTicks;
+            minLength = Math.min(minLength, other.minLength);
+            maxLength = Math.max(maxLength, other.maxLength);
+            return this;
+        }
+
+        public int getGames() {
+            return games;
+        }
+
+        public int getWins() {
+            return wins;
+        }
+
+        public int getLosses() {
+            return losses;
+        }
+
+        public int getTimeouts() {
+            return timeouts;
+        }
+
+        public long getTotalTicks() {
+            return totalTicks;
+        }
+
+        public double getMeanLength() {
+            return games == 0 ? 0 : (double) totalTicks / games;
+        }
+
+        public double getTicksPerSecond() {
+            return elapsedNanos == 0 ? 0 : totalTicks * 1e9 / elapsedNanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("games=%d wins=%d losses=%d timeouts=%d%n"
+                    + "length min=%d mean=%.1f max=%d ticks%n"
+                    + "total=%d ticks in %.2f s (%.0f ticks/s)",
+                    games, wins, losses, timeouts,
+                    games == 0 ? 0 : minLength, getMeanLength(), maxLength,
+                    totalTicks, elapsedNanos / 1e9, getTicksPerSecond());
+        }
+    }
+
+    // Usage: BatchSimulator [games] [maxTicks] [threads] [seed]
+    public static void main(String[] args) {
+        int games = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        int maxTicks = args.length > 1 ? Integer.parseInt(args[1]) : 20000;
+        int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+        long seed = args.length > 3 ? Long.parseLong(args[3]) : System.nanoTime();
+
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            Result result = new BatchSimulator(games, maxTicks, seed).run(pool);
+            System.out.println("threads=" + threads + " seed=" + seed);
+            System.out.println(result);
+        } finally {
+            pool.shutdown();
+        }
+    }
+}
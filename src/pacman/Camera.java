@@ -0,0 +1,77 @@
+package pacman;
+
+// The part of the game world shown on screen, in game pixels. The camera keeps a target (Pacman) in the
+// middle of the view without scrolling past the edges of the maze; a maze smaller than the view is centered.
+// Renderers use it to skip tiles and sprites that are off screen.
+public class Camera {
+    private int viewWidth;
+    private int viewHeight;
+    private int x;
+    private int y;
+
+    // Constructs a camera with a view of the given size, looking at the origin.
+    public Camera(int viewWidth, int viewHeight) {
+        setViewSize(viewWidth, viewHeight);
+    }
+
+    public void setViewSize(int viewWidth, int viewHeight) {
+        this.viewWidth = Math.max(1, viewWidth);
+        this.viewHeight = Math.max(1, viewHeight);
+    }
+
+    // Moves the view to center (targetX, targetY), clamped to the world rectangle.
+    public void follow(int targetX, int targetY, int worldX, int worldY, int worldWidth, int worldHeight) {
+        x = axis(targetX, worldX, worldWidth, viewWidth);
+        y = axis(targetY, worldY, worldHeight, viewHeight);
+    }
+
+    private static int axis(int target, int worldStart, int worldSize, int viewSize) {
+        if (worldSize <= viewSize) {
+            return worldStart - (viewSize - worldSize) / 2;
+        }
+        return Math.max(worldStart, Math.min(target - viewSize / 2, worldStart + worldSize - viewSize));
+    }
+
+    // Left edge of the view.
+    public int getX() {
+        return x;
+    }
+
+    // Top edge of the view.
+    public int getY() {
+        return y;
+    }
+
+    public int getViewWidth() {
+        return viewWidth;
+    }
+
+    public int getViewHeight() {
+        return viewHeight;
+    }
+
+    // Checks if any part of a rectangle is in view.
+    public boolean isVisible(int left, int top, int width, int height) {
+        return left + width > x && left < x + viewWidth && top + height > y && top < y + viewHeight;
+    }
+
+    // Returns the first tile column in view, for tiles of tileSize starting at xOffset; may be out of range.
+    public int firstCol(int xOffset, int tileSize) {
+        return Math.floorDiv(x - xOffset, tileSize);
+    }
+
+    // Returns the last tile column in view; may be out of range.
+    public int lastCol(int xOffset, int tileSize) {
+        return Math.floorDiv(x + viewWidth - 1 - xOffset, tileSize);
+    }
+
+    // Returns the first tile row in view; may be out of range.
+    public int firstRow(int yOffset, int tileSize) {
+        return Math.floorDiv(y - yOffset, tileSize);
+    }
+
+    // Returns the last tile row in view; may be out of range.
+    public int lastRow(int yOffset, int tileSize) {
+        return Math.floorDiv(y + viewHeight - 1 - yOffset, tileSize);
+    }
+}
@@ -0,0 +1,165 @@
+package pacman;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+// A running game kept in a memory-mapped file, so that it survives the process dying and can be resumed.
+// The file holds two slots and every save overwrites the older one: a save cut short by a crash leaves a
+// slot whose CRC does not match, and loading falls back to the other, one tick older. Writes go straight
+// into the mapping, which the operating system flushes on its own schedule, so a save costs a snapshot
+// and a CRC and is cheap enough to take every tick.
+//
+// File layout, little-endian: magic "PMCK", version and slot size as ints, then two slots of (sequence long,
+// length int, CRC-32 int, snapshot bytes). The slot with the highest sequence whose CRC matches is the
+// current one.
+public final class Checkpoint implements Closeable {
+    private static final int MAGIC = 0x504D434B; // "PMCK"
+    private static final int VERSION = 1;
+    private static final int FILE_HEADER_SIZE = 12;
+    private static final int SLOT_HEADER_SIZE = 16;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer map;
+    private final int slotSize;
+    private final ByteBuffer[] slots = new ByteBuffer[2]; // Views over each slot's snapshot bytes.
+    private final CRC32 crc = new CRC32();
+    private long sequence;
+    private boolean cleared;
+
+    private Checkpoint(FileChannel channel, MappedByteBuffer map, int slotSize) {
+        this.channel = channel;
+        this.map = map;
+        this.slotSize = slotSize;
+        for (int i = 0; i < 2; i++) {
+            slots[i] = map.duplicate().position(slotOffset(i) + SLOT_HEADER_SIZE).limit(slotOffset(i + 1)).slice()
+                    .order(ByteOrder.LITTLE_ENDIAN);
+            sequence = Math.max(sequence, map.getLong(slotOffset(i)));
+        }
+    }
+
+    // Opens a checkpoint file with room for snapshots of up to capacity bytes, creating it if needed.
+    // A file laid out for another capacity is started afresh; load it first to resume its game.
+    public static Checkpoint open(Path file, int capacity) throws IOException {
+        int slotSize = SLOT_HEADER_SIZE + capacity;
+        long fileSize = FILE_HEADER_SIZE + 2L * slotSize;
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            boolean fresh = channel.size() != fileSize;
+            if (fresh) {
+                channel.truncate(0);
+            }
+            MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_WRITE, 0, fileSize);
+            map.order(ByteOrder.LITTLE_ENDIAN);
+            if (fresh || map.getInt(0) != MAGIC || map.getInt(4) != VERSION || map.getInt(8) != slotSize) {
+                for (int i = 0; i < fileSize; i++) {
+                    map.put(i, (byte) 0);
+                }
+                map.putInt(0, MAGIC).putInt(4, VERSION).putInt(8, slotSize);
+            }
+            return new Checkpoint(channel, map, slotSize);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    // Saves the engine's state over the older slot; a finished game clears the checkpoint instead, so only
+    // games in progress are resumed. Allocates nothing.
+    public void save(GameEngine engine) {
+        if (engine.isFinished()) {
+            if (!cleared) {
+                clear();
+            }
+            return;
+        }
+        int slot = (int) (sequence + 1) & 1;
+        int offset = slotOffset(slot);
+        ByteBuffer data = slots[slot];
+        data.clear();
+        engine.saveSnapshot(data);
+        int length = data.position();
+        data.flip();
+        crc.reset();
+        crc.update(data);
+        // The sequence goes last: until it is written, loading still prefers the other slot.
+        map.putInt(offset + 8, length);
+        map.putInt(offset + 12, (int) crc.getValue());
+        map.putLong(offset, ++sequence);
+        cleared = false;
+    }
+
+    // Forgets the saved game.
+    public void clear() {
+        for (int i = 0; i < 2; i++) {
+            map.putLong(slotOffset(i), 0).putInt(slotOffset(i) + 8, 0);
+        }
+        cleared = true;
+    }
+
+    // Writes the mapped file out to the storage device, for a checkpoint that must survive the machine
+    // going down too; a process crash alone loses nothing that save() wrote.
+    public void force() {
+        map.force();
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private int slotOffset(int slot) {
+        return FILE_HEADER_SIZE + slot * slotSize;
+    }
+
+    // Rebuilds the game saved in a checkpoint file on the given maze, or returns null if the file holds no
+    // intact game, or one played on another maze.
+    public static GameEngine load(Path file, Maze maze) throws IOException {
+        if (!Files.exists(file)) {
+            return null;
+        }
+        ByteBuffer bytes = ByteBuffer.wrap(Files.readAllBytes(file)).order(ByteOrder.LITTLE_ENDIAN);
+        if (bytes.limit() < FILE_HEADER_SIZE || bytes.getInt(0) != MAGIC || bytes.getInt(4) != VERSION) {
+            return null;
+        }
+        int slotSize = bytes.getInt(8);
+        if (slotSize < SLOT_HEADER_SIZE || bytes.limit() != FILE_HEADER_SIZE + 2L * slotSize) {
+            return null;
+        }
+        CRC32 crc = new CRC32();
+        ByteBuffer best = null;
+        long bestSequence = 0;
+        for (int i = 0; i < 2; i++) {
+            int offset = FILE_HEADER_SIZE + i * slotSize;
+            long sequence = bytes.getLong(offset);
+            int length = bytes.getInt(offset + 8);
+            if (sequence <= bestSequence || length <= 0 || length > slotSize - SLOT_HEADER_SIZE) {
+                continue;
+            }
+            ByteBuffer data = bytes.duplicate().position(offset + SLOT_HEADER_SIZE).limit(offset + SLOT_HEADER_SIZE + length)
+                    .slice().order(ByteOrder.LITTLE_ENDIAN);
+            crc.reset();
+            crc.update(data.duplicate());
+            if ((int) crc.getValue() == bytes.getInt(offset + 12)) {
+                best = data;
+                bestSequence = sequence;
+            }
+        }
+        if (best == null) {
+            return null;
+        }
+        try {
+            return GameEngine.fromSnapshot(maze, best);
+        } catch (IllegalArgumentException | BufferUnderflowException e) {
+            return null;
+        }
+    }
+}
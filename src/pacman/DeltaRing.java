@@ -0,0 +1,172 @@
+package pacman;
+
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+
+// A single-producer, multi-consumer broadcast ring of variable-length records. One thread publishes; any
+// number of Readers follow at their own pace, each with its own cursor, and none of them is ever waited
+// for: the producer simply overwrites the oldest records. A reader that falls a whole ring behind is told
+// it was lapped and moved to the newest keyframe record, from which it can resync.
+//
+// Readers cannot lock out the producer, so they check their copies afterwards, seqlock style. Before
+// writing, the producer raises tailIntent to the end of the bytes it is about to overwrite; after
+// writing, it raises tail to publish them. A reader copies a record below tail, then re-reads tailIntent:
+// if the producer may since have written over the record's bytes, the copy is discarded as lapped.
+//
+// Positions are byte offsets since the ring was created, so they never wrap. Records are an int payload
+// length, an int type and the payload, aligned to 8 bytes; a record that would run past the end of the
+// ring goes at its start, after a padding record filling the rest.
+public final class DeltaRing {
+    // Types returned by Reader.read() besides the record types the producer uses, which must be >= 0.
+    public static final int NONE = -1;
+    public static final int LAPPED = -2;
+
+    private static final int PADDING = -3;
+    private static final int HEADER_SIZE = 8;
+    private static final int ALIGNMENT = 8;
+
+    private final byte[] buffer;
+    private final ByteBuffer producerView;
+    private final int capacity;
+    private final int mask;
+    private final int maxRecordLength;
+    private final int keyType;
+    private volatile long tailIntent;
+    private volatile long tail;
+    private volatile long latestKey = -1; // Position of the newest keyframe record, or -1.
+
+    // Producer state between claim() and commit().
+    private long claimed;
+    private int claimedOffset;
+
+    // Constructs a ring of at least capacity bytes (rounded up to a power of two); records of keyType are
+    // the keyframes lapped readers are moved to. Records may be up to a quarter of the ring.
+    public DeltaRing(int capacity, int keyType) {
+        int size = Integer.highestOneBit(Math.max(64, capacity - 1)) << 1;
+        this.capacity = size;
+        this.mask = size - 1;
+        this.maxRecordLength = size / 4 - HEADER_SIZE;
+        this.keyType = keyType;
+        buffer = new byte[size];
+        producerView = ByteBuffer.wrap(buffer);
+    }
+
+    // Returns the largest payload a record may have.
+    public int getMaxRecordLength() {
+        return maxRecordLength;
+    }
+
+    // Claims room for a record of up to maxLength payload bytes. Returns a buffer positioned at the payload,
+    // with room for maxLength bytes, to write it with relative puts; commit() publishes it. Producer only.
+    public ByteBuffer claim(int maxLength) {
+        if (maxLength < 0 || maxLength > maxRecordLength) {
+            throw new IllegalArgumentException("Record of " + maxLength + " bytes does not fit a ring of " + capacity);
+        }
+        long position = tail;
+        int offset = (int) (position & mask);
+        int needed = align(HEADER_SIZE + maxLength);
+        int padding = needed > capacity - offset ? capacity - offset : 0;
+        tailIntent = position + padding + needed;
+        VarHandle.storeStoreFence(); // Readers must see the intent before any byte it covers changes.
+        if (padding > 0) {
+            producerView.putInt(offset, padding - HEADER_SIZE).putInt(offset + 4, PADDING);
+            position += padding;
+            offset = 0;
+        }
+        claimed = position;
+        claimedOffset = offset;
+        producerView.limit(offset + HEADER_SIZE + maxLength).position(offset + HEADER_SIZE);
+        return producerView;
+    }
+
+    // Publishes the record written since claim(), ending at the buffer's position, as the given type (>= 0).
+    public void commit(int type) {
+        int length = producerView.position() - claimedOffset - HEADER_SIZE;
+        producerView.putInt(claimedOffset, length).putInt(claimedOffset + 4, type);
+        producerView.clear();
+        if (type == keyType) {
+            latestKey = claimed;
+        }
+        tail = claimed + align(HEADER_SIZE + length);
+    }
+
+    // Returns the ring's size in bytes.
+    public int getCapacity() {
+        return capacity;
+    }
+
+    // Returns a new reader, starting from the newest keyframe if there is one, otherwise from the next record.
+    public Reader newReader() {
+        return new Reader();
+    }
+
+    private static int align(int length) {
+        return (length + ALIGNMENT - 1) & -ALIGNMENT;
+    }
+
+    // One consumer's cursor into the ring. Each reader belongs to one thread; it never writes to the ring.
+    public final class Reader {
+        private final ByteBuffer view = ByteBuffer.wrap(buffer);
+        private long cursor;
+        private long lapped;
+
+        private Reader() {
+            long key = latestKey;
+            cursor = key >= 0 ? key : tail;
+        }
+
+        // Copies the next record's payload into dst, from index 0 with the limit at its end, and returns the
+        // record's type; or returns NONE if there is nothing new, or LAPPED if records were overwritten before
+        // this reader got to them, in which case it has moved on to the newest keyframe. dst must have room
+        // for getMaxRecordLength() bytes. Never blocks, and allocates nothing.
+        public int read(ByteBuffer dst) {
+            while (true) {
+                long position = cursor;
+                long published = tail;
+                if (position >= published) {
+                    return NONE;
+                }
+                if (published - position > capacity) {
+                    return lap();
+                }
+                int offset = (int) (position & mask);
+                int length = view.getInt(offset);
+                int type = view.getInt(offset + 4);
+                // A record being overwritten can have any header; only trust one that fits.
+                boolean sane = length >= 0 && length <= capacity - offset - HEADER_SIZE
+                        && (type == PADDING || length <= maxRecordLength);
+                if (sane && type != PADDING) {
+                    dst.clear().put(0, buffer, offset + HEADER_SIZE, length).limit(length);
+                }
+                VarHandle.loadLoadFence(); // The copy must be complete before the check below.
+                if (tailIntent - position > capacity || !sane) {
+                    return lap();
+                }
+                cursor = position + align(HEADER_SIZE + length);
+                if (type != PADDING) {
+                    return type;
+                }
+            }
+        }
+
+        // Moves to the newest keyframe; or, if that has been overwritten too, to the next record, to wait
+        // for a new one.
+        private int lap() {
+            lapped++;
+            long key = latestKey;
+            long published = tail;
+            cursor = key >= 0 && published - key <= capacity ? key : published;
+            return LAPPED;
+        }
+
+        // Returns how many bytes of published records this reader has yet to read.
+        public long getLag() {
+            return Math.max(0, tail - cursor);
+        }
+
+        // Returns how many times this reader was lapped.
+        public long getLapped() {
+            return lapped;
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package pacman;
+
+import java.awt.Color;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.Transparency;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+
+// Filled circles pre-rendered once per colour and size, for the sprites and power pellets drawn every frame.
+// An antialiased fillOval builds a new shape on every call; copying a cached stamp in device space does not,
+// which keeps the render path free of garbage.
+public class DiscStamps {
+    private static final AffineTransform IDENTITY = new AffineTransform();
+
+    // Stamps for the scale they were rendered at, looked up by linear search: there are only a handful.
+    private int[] rgbs = new int[8];
+    private int[] diameters = new int[8];
+    private BufferedImage[] stamps = new BufferedImage[8];
+    private int count;
+    private double stampScaleX;
+    private double stampScaleY;
+
+    // Draws a filled circle of the given 0xRRGGBB colour and diameter with its bounding box at (x, y) in game
+    // coordinates.
+    public void draw(Graphics g, int rgb, int x, int y, int diameter) {
+        if (!(g instanceof Graphics2D)) {
+            g.setColor(new Color(rgb));
+            g.fillOval(x, y, diameter, diameter);
+            return;
+        }
+        Graphics2D g2d = (Graphics2D) g;
+        AffineTransform transform = g2d.getTransform();
+        if (transform.getShearX() != 0 || transform.getShearY() != 0) {
+            g2d.setColor(new Color(rgb));
+            g2d.fillOval(x, y, diameter, diameter); // Rotated views are not worth caching.
+            return;
+        }
+
+        double scaleX = transform.getScaleX();
+        double scaleY = transform.getScaleY();
+        if (scaleX != stampScaleX || scaleY != stampScaleY) {
+            clear();
+            stampScaleX = scaleX;
+            stampScaleY = scaleY;
+        }
+        BufferedImage stamp = find(rgb, diameter);
+        if (stamp == null) {
+            stamp = add(g2d, rgb, diameter, scaleX, scaleY);
+        }
+
+        // Copy 1:1 in device space, like the board layer, instead of resampling the stamp.
+        int deviceX = (int) Math.round(transform.getTranslateX() + x * scaleX);
+        int deviceY = (int) Math.round(transform.getTranslateY() + y * scaleY);
+        g2d.setTransform(IDENTITY);
+        g2d.drawImage(stamp, deviceX, deviceY, null);
+        g2d.setTransform(transform);
+    }
+
+    private BufferedImage find(int rgb, int diameter) {
+        for (int i = 0; i < count; i++) {
+            if (rgbs[i] == rgb && diameters[i] == diameter) {
+                return stamps[i];
+            }
+        }
+        return null;
+    }
+
+    // Renders a new stamp at device resolution with the target's rendering hints.
+    private BufferedImage add(Graphics2D target, int rgb, int diameter, double scaleX, double scaleY) {
+        int width = Math.max(1, (int) Math.ceil(diameter * scaleX));
+        int height = Math.max(1, (int) Math.ceil(diameter * scaleY));
+        GraphicsConfiguration config = target.getDeviceConfiguration();
+        BufferedImage image = config != null
+                ? config.createCompatibleImage(width, height, Transparency.TRANSLUCENT)
+                : new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB_PRE);
+        Graphics2D ig = image.createGraphics();
+        ig.setRenderingHints(target.getRenderingHints());
+        ig.scale(scaleX, scaleY);
+        ig.setColor(new Color(rgb));
+        ig.fillOval(0, 0, diameter, diameter);
+        ig.dispose();
+
+        if (count == stamps.length) {
+            rgbs = Arrays.copyOf(rgbs, count * 2);
+            diameters = Arrays.copyOf(diameters, count * 2);
+            stamps = Arrays.copyOf(stamps, count * 2);
+        }
+        rgbs[count] = rgb;
+        diameters[count] = diameter;
+        stamps[count] = image;
+        count++;
+        return image;
+    }
+
+    // Drops every stamp, e.g. after the view scale changed.
+    private void clear() {
+        for (int i = 0; i < count; i++) {
+            stamps[i].flush();
+            stamps[i] = null;
+        }
+        count = 0;
+    }
+}
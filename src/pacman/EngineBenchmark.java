@@ -0,0 +1,502 @@
+package pacman;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+// Micro-benchmarks for the engine hot paths, with per-operation allocation and GC accounting.
+// Each benchmark warms up, then runs timed batches and reports ns/op and bytes allocated per op.
+// The per-tick paths (update(), draw() and the rest) are marked allocation-free; AllocationCheck runs the
+// same operations and fails if any of them allocates a single byte.
+// bench/ times the same hot paths under JMH. close() releases the worker gang and checkpoint file that some
+// of the benchmarks hold.
+//
+// Usage: java pacman.EngineBenchmark [filter] [measureMillis]
+public class EngineBenchmark implements AutoCloseable {
+    static final int TILE_SIZE = 16;
+    static final int WIDTH = Maze.COLS * TILE_SIZE;
+    static final int HEIGHT = Maze.ROWS * TILE_SIZE;
+    static final long SEED = 42;
+    // Warm-up runs at least this many operations, so the JIT has compiled and escape-analysed the hot
+    // paths before allocations are counted; slow operations would otherwise be measured half-interpreted.
+    private static final long WARMUP_OPERATIONS = 30_000;
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    // Results are folded into this field so the JIT cannot discard the benchmarked work.
+    static volatile long sink;
+
+    // One benchmarked operation; run(n) performs n operations and returns a value to consume.
+    interface Operation {
+        long run(int n);
+
+        // Bytes allocated so far by set-up work inside run() that is not part of the operation
+        // (such as starting a new game), which the allocation figures leave out.
+        default long setupBytes() {
+            return 0;
+        }
+    }
+
+    // A named operation, and whether it must allocate nothing once warmed up.
+    static final class Benchmark {
+        final String name;
+        final Operation operation;
+        final boolean allocationFree;
+
+        Benchmark(String name, boolean allocationFree, Operation operation) {
+            this.name = name;
+            this.operation = operation;
+            this.allocationFree = allocationFree;
+        }
+    }
+
+    private final List<Benchmark> benchmarks = new ArrayList<>();
+    private final List<AutoCloseable> resources = new ArrayList<>();
+    private final long measureNanos;
+
+    EngineBenchmark(long measureMillis) {
+        this.measureNanos = measureMillis * 1_000_000L;
+    }
+
+    // Registers every benchmark.
+    void defineBenchmarks() {
+        for (int ghosts : new int[] {4, 64, 1024, 16384}) {
+            benchmarks.add(new Benchmark("update/ghosts=" + ghosts, true, new UpdateOperation(ghosts, null)));
+        }
+        // Swarms split over every core; only the calling thread's allocation is measured.
+        int cores = Runtime.getRuntime().availableProcessors();
+        if (cores > 1) {
+            WorkerGang gang = new WorkerGang(cores, "benchmark-ghosts");
+            resources.add(gang);
+            benchmarks.add(new Benchmark("update/ghosts=16384 threads=" + cores, true, new UpdateOperation(16384, gang)));
+        }
+
+        GameEngine wallEngine = new GameEngine(WIDTH, HEIGHT, SEED);
+        int[] probes = pixelProbes(wallEngine, 1024);
+        benchmarks.add(new Benchmark("collidesWithWalls", true, n -> {
+            long hits = 0;
+            for (int i = 0; i < n; i++) {
+                int p = (i & (probes.length / 2 - 1)) * 2;
+                if (wallEngine.collidesWithWalls(probes[p], probes[p + 1], TILE_SIZE, TILE_SIZE)) {
+                    hits++;
+                }
+            }
+            return hits;
+        }));
+
+        GameEngine ghostEngine = releasedGhosts(new GameEngine(WIDTH, HEIGHT, SEED));
+        benchmarks.add(new Benchmark("moveSingleGhost", true, n -> {
+            GhostPool pool = ghostEngine.getGhostPool();
+            long sum = 0;
+            for (int i = 0; i < n; i++) {
+                ghostEngine.moveSingleGhost(i & 3);
+                sum += pool.getX(i & 3);
+            }
+            return sum;
+        }));
+
+        int[] possibleDx = {1, -1, 0, 0};
+        int[] possibleDy = {0, 0, 1, -1};
+        int[] scores = new int[4];
+        benchmarks.add(new Benchmark("calculateGhostDirectionScores", true, n -> {
+            Ghost ghost = ghostEngine.getGhosts().get(0);
+            Pacman pacman = ghostEngine.getPacman();
+            int row = (ghost.getY() - ghostEngine.getYOffset()) / TILE_SIZE;
+            int col = (ghost.getX() - ghostEngine.getXOffset()) / TILE_SIZE;
+            long sum = 0;
+            for (int i = 0; i < n; i++) {
+                ghostEngine.calculateGhostDirectionScores(0, pacman.getX(), pacman.getY(), row, col,
+                        ghost.getSpeed(), possibleDx, possibleDy, scores);
+                sum += scores[i & 3];
+            }
+            return sum;
+        }));
+
+        // Collision cost should not depend on how many ghosts are elsewhere in the maze.
+        for (int ghosts : new int[] {4, 4096}) {
+            GameEngine collisionEngine = scatteredGhosts(new GameEngine(WIDTH, HEIGHT, SEED, ghosts));
+            benchmarks.add(new Benchmark("checkPacmanGhostCollisions/ghosts=" + ghosts, true, n -> {
+                for (int i = 0; i < n; i++) {
+                    collisionEngine.checkPacmanGhostCollisions();
+                }
+                return collisionEngine.isGameOver() ? 1 : 0;
+            }));
+        }
+
+        GameEngine snapEngine = new GameEngine(WIDTH, HEIGHT, SEED);
+        // Start from the middle of the wall block above the ghost house, a few tiles from open space.
+        int stuckX = snapEngine.getXOffset() + 13 * TILE_SIZE;
+        int stuckY = snapEngine.getYOffset() + 6 * TILE_SIZE;
+        benchmarks.add(new Benchmark("snapPacmanToNearestFree", true, n -> {
+            Pacman pacman = snapEngine.getPacman();
+            long sum = 0;
+            for (int i = 0; i < n; i++) {
+                pacman.setX(stuckX);
+                pacman.setY(stuckY);
+                snapEngine.snapPacmanToNearestFree();
+                sum += pacman.getX();
+            }
+            return sum;
+        }));
+
+        benchmarks.add(new Benchmark("constructor", false, n -> {
+            long sum = 0;
+            for (int i = 0; i < n; i++) {
+                sum += new GameEngine(WIDTH, HEIGHT, SEED + i).getScore();
+            }
+            return sum;
+        }));
+
+        // Snapshots are meant to be taken every tick, of a game in progress.
+        GameEngine snapshotEngine = gameInProgress(new GameEngine(WIDTH, HEIGHT, SEED));
+        ByteBuffer snapshot = ByteBuffer.allocateDirect(snapshotEngine.getSnapshotSize()).order(ByteOrder.LITTLE_ENDIAN);
+        benchmarks.add(new Benchmark("saveSnapshot", true, n -> {
+            for (int i = 0; i < n; i++) {
+                snapshot.clear();
+                snapshotEngine.saveSnapshot(snapshot);
+            }
+            return snapshot.position();
+        }));
+        benchmarks.add(new Benchmark("restoreSnapshot", true, n -> {
+            for (int i = 0; i < n; i++) {
+                snapshot.rewind();
+                snapshotEngine.restoreSnapshot(snapshot);
+            }
+            return snapshotEngine.getTickCount();
+        }));
+        Path checkpointFile = temporaryFile("checkpoint");
+        resources.add(() -> Files.deleteIfExists(checkpointFile));
+        Checkpoint checkpoint = openCheckpoint(checkpointFile, snapshotEngine);
+        resources.add(checkpoint);
+        benchmarks.add(new Benchmark("checkpoint/save", true, n -> {
+            for (int i = 0; i < n; i++) {
+                checkpoint.save(snapshotEngine);
+            }
+            return n;
+        }));
+
+        // A server session's frame, encoded every tick of a game in progress.
+        GameEngine frameEngine = new GameEngine(WIDTH, HEIGHT, SEED);
+        StateEncoder encoder = new StateEncoder(frameEngine);
+        ByteBuffer frame = ByteBuffer.allocateDirect(StateEncoder.maxFrameSize(frameEngine));
+        benchmarks.add(new Benchmark("stateEncoder/write", true, n -> {
+            for (int i = 0; i < n; i++) {
+                frameEngine.step((i >> 6 & 1) == 0 ? 1 : -1, 0);
+                if (frameEngine.isFinished()) {
+                    frameEngine.reset(SEED + i);
+                    encoder.invalidate();
+                }
+                frame.clear();
+                encoder.write(frameEngine, frame);
+            }
+            return frame.position();
+        }));
+
+        // A spectated game's tick published to its feed, with one spectator keeping up.
+        GameEngine feedEngine = new GameEngine(WIDTH, HEIGHT, SEED);
+        SpectatorFeed feed = new SpectatorFeed(feedEngine);
+        SpectatorFeed.Reader spectator = feed.newReader();
+        benchmarks.add(new Benchmark("spectatorFeed/publish", true, n -> {
+            int applied = 0;
+            for (int i = 0; i < n; i++) {
+                feedEngine.step((i >> 6 & 1) == 0 ? 1 : -1, 0);
+                if (feedEngine.isFinished()) {
+                    feedEngine.reset(SEED + i);
+                }
+                feed.publish();
+                applied += spectator.poll();
+            }
+            return applied;
+        }));
+
+        // A tick of an interactive game, its events queued for the UI and drained as the EDT would.
+        GameEngine eventEngine = new GameEngine(WIDTH, HEIGHT, SEED);
+        GameEventQueue eventQueue = new GameEventQueue(eventEngine, 1024, null);
+        int[] eventCounts = new int[5];
+        GameListener eventCounter = (engine, type, arg) -> eventCounts[type]++;
+        benchmarks.add(new Benchmark("gameEvents/update", true, n -> {
+            for (int i = 0; i < n; i++) {
+                eventEngine.step((i >> 6 & 1) == 0 ? 1 : -1, 0);
+                if (eventEngine.isFinished()) {
+                    eventEngine.reset(SEED + i);
+                }
+                eventQueue.drain(eventCounter);
+            }
+            return eventCounts[GameListener.PELLET_EATEN];
+        }));
+
+        // One batch step of many short training games, resets included; the gang's own threads are not
+        // measured here, so this runs on the calling thread alone.
+        VectorEnv vectorEnv = new VectorEnv(Maze.standard(), 64, GameEngine.DEFAULT_GHOST_COUNT, 2000, 1);
+        vectorEnv.reset(SEED);
+        int[] actions = new int[vectorEnv.getEnvCount()];
+        benchmarks.add(new Benchmark("vectorEnv/step envs=64", true, n -> {
+            for (int i = 0; i < n; i++) {
+                for (int env = 0; env < actions.length; env++) {
+                    actions[env] = (env + i >> 5) % VectorEnv.ACTIONS;
+                }
+                vectorEnv.step(actions);
+            }
+            return vectorEnv.getRewards()[0] > 0 ? 1 : 0;
+        }));
+
+        // A frame of a game that stands still, so only the drawing is timed.
+        GameEngine drawEngine = gameInProgress(new GameEngine(WIDTH, HEIGHT, SEED));
+        Graphics2D g = offscreenGraphics();
+        benchmarks.add(new Benchmark("draw", true, n -> {
+            for (int i = 0; i < n; i++) {
+                drawEngine.draw(g, 0.5);
+            }
+            return drawEngine.getTickCount();
+        }));
+
+        // A maze far larger than the view: only the tiles around Pacman should cost anything.
+        GameEngine scrollEngine = new GameEngine(MazeGenerator.generate(1024, 1024, MazeGenerator.DEFAULT_DENSITY, SEED),
+                TILE_SIZE, SEED, GameEngine.DEFAULT_GHOST_COUNT);
+        scrollEngine.getCamera().setViewSize(WIDTH, HEIGHT);
+        benchmarks.add(new Benchmark("draw/scrolling maze=1024x1024", true, n -> {
+            for (int i = 0; i < n; i++) {
+                scrollEngine.step((i >> 6 & 1) == 0 ? 1 : -1, 0);
+                scrollEngine.draw(g, 0.5);
+            }
+            return scrollEngine.getTickCount();
+        }));
+
+        // Ghost AI on the same maze: the shared flow field should only cost the region around Pacman.
+        GameEngine fieldEngine = new GameEngine(scrollEngine.getMaze(), TILE_SIZE, SEED, 256);
+        benchmarks.add(new Benchmark("update/ghosts=256 maze=1024x1024", true, n -> {
+            for (int i = 0; i < n; i++) {
+                int dir = (int) ((fieldEngine.getTickCount() / 15) & 3);
+                fieldEngine.step(MazeTopology.DIR_X[dir], MazeTopology.DIR_Y[dir]);
+                if (fieldEngine.isFinished()) {
+                    fieldEngine.reset(SEED + fieldEngine.getTickCount());
+                }
+            }
+            return fieldEngine.getTickCount();
+        }));
+    }
+
+    // Steps an engine with a given number of ghosts, starting a new game whenever one ends.
+    private static final class UpdateOperation implements Operation {
+        private final GameEngine engine;
+        private long games;
+        private long setupBytes;
+
+        UpdateOperation(int ghostCount, WorkerGang gang) {
+            engine = new GameEngine(WIDTH, HEIGHT, SEED, ghostCount);
+            engine.setGhostGang(gang);
+            engine.reset(SEED); // Sets aside the reset scratch space up front.
+        }
+
+        @Override
+        public long run(int n) {
+            GameEngine current = engine;
+            for (int i = 0; i < n; i++) {
+                // Turn every half second so Pacman keeps moving through the maze.
+                int dir = (int) ((current.getTickCount() / 15) & 3);
+                current.step(MazeTopology.DIR_X[dir], MazeTopology.DIR_Y[dir]);
+            }
+            long ticks = current.getTickCount();
+            if (current.isFinished()) {
+                // At most one reset per batch, so it adds little to the per-tick time. A reset allocates
+                // nothing either, but it is not a tick: anything the JVM allocates while first running
+                // its rarer paths is set-up.
+                long thread = Thread.currentThread().getId();
+                long before = THREADS.getThreadAllocatedBytes(thread);
+                current.reset(SEED + ++games);
+                setupBytes += THREADS.getThreadAllocatedBytes(thread) - before;
+            }
+            return ticks;
+        }
+
+        @Override
+        public long setupBytes() {
+            return setupBytes;
+        }
+    }
+
+    // Creates an empty temporary file with the given suffix; the caller deletes it.
+    static Path temporaryFile(String suffix) {
+        try {
+            return Files.createTempFile("pacman-benchmark", "." + suffix);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // Opens a checkpoint in the given file, sized for the engine's snapshots.
+    static Checkpoint openCheckpoint(Path file, GameEngine engine) {
+        try {
+            return Checkpoint.open(file, engine.getSnapshotSize());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // Advances an engine 200 ticks into a game, Pacman running left and right.
+    static GameEngine gameInProgress(GameEngine engine) {
+        for (int i = 0; i < 200; i++) {
+            engine.step(i / 50 % 2 == 0 ? 1 : -1, 0);
+        }
+        return engine;
+    }
+
+    // Returns antialiased, scaled graphics drawing into an offscreen image the size of the standard maze.
+    static Graphics2D offscreenGraphics() {
+        Graphics2D g = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB).createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        g.scale(0.9, 0.9);
+        return g;
+    }
+
+    // Returns pixel positions spread over the maze, as (x, y) pairs.
+    static int[] pixelProbes(GameEngine engine, int count) {
+        GameRandom random = new GameRandom(SEED);
+        int[] probes = new int[count * 2];
+        for (int i = 0; i < count; i++) {
+            probes[i * 2] = engine.getXOffset() + random.nextInt((Maze.COLS - 1) * TILE_SIZE);
+            probes[i * 2 + 1] = engine.getYOffset() + random.nextInt((Maze.ROWS - 1) * TILE_SIZE);
+        }
+        return probes;
+    }
+
+    // Advances an engine until every ghost has left the house.
+    static GameEngine releasedGhosts(GameEngine engine) {
+        while (engine.getGhosts().stream().anyMatch(Ghost::isInCage)) {
+            engine.step(0, 0);
+        }
+        return engine;
+    }
+
+    // Releases every ghost onto a random open tile at least two tiles from Pacman, so none collide.
+    static GameEngine scatteredGhosts(GameEngine engine) {
+        MazeTopology topology = engine.getMaze().getTopology();
+        GhostPool pool = engine.getGhostPool();
+        GameRandom random = new GameRandom(SEED);
+        int pacRow = (engine.getPacman().getY() - engine.getYOffset()) / TILE_SIZE;
+        int pacCol = (engine.getPacman().getX() - engine.getXOffset()) / TILE_SIZE;
+        for (int g = 0; g < pool.size(); g++) {
+            int node;
+            do {
+                node = random.nextInt(topology.getOpenTileCount());
+            } while (Math.abs(topology.rowOf(node) - pacRow) < 2 && Math.abs(topology.colOf(node) - pacCol) < 2);
+            pool.setInCage(g, false);
+            pool.setX(g, engine.getXOffset() + topology.colOf(node) * TILE_SIZE);
+            pool.setY(g, engine.getYOffset() + topology.rowOf(node) * TILE_SIZE);
+        }
+        return engine;
+    }
+
+    List<Benchmark> getBenchmarks() {
+        return benchmarks;
+    }
+
+    // Stops the worker gang, and closes and deletes the checkpoint file.
+    @Override
+    public void close() {
+        for (int i = resources.size() - 1; i >= 0; i--) {
+            try {
+                resources.get(i).close();
+            } catch (Exception e) {
+                throw new IllegalStateException("Cannot release a benchmark resource", e);
+            }
+        }
+        resources.clear();
+    }
+
+    // Runs every benchmark whose name contains filter.
+    void runAll(String filter) {
+        System.out.printf("%-40s %12s %14s %10s %10s%n", "benchmark", "ns/op", "bytes/op", "gc count", "gc ms");
+        for (Benchmark benchmark : benchmarks) {
+            if (benchmark.name.contains(filter)) {
+                run(benchmark);
+            }
+        }
+    }
+
+    // Warms up and measures one benchmark.
+    private void run(Benchmark benchmark) {
+        int batch = batchSize(benchmark);
+        long[] result = new long[2];
+        runFor(benchmark, batch, measureNanos / 2, WARMUP_OPERATIONS, result); // Warm-up, discarded.
+
+        long thread = Thread.currentThread().getId();
+        long gcCountBefore = gcCount();
+        long gcTimeBefore = gcMillis();
+        long setupBefore = benchmark.operation.setupBytes();
+        long allocatedBefore = THREADS.getThreadAllocatedBytes(thread);
+        runFor(benchmark, batch, measureNanos, 0, result);
+        long allocated = THREADS.getThreadAllocatedBytes(thread) - allocatedBefore
+                - (benchmark.operation.setupBytes() - setupBefore);
+
+        long ops = result[0];
+        long nanos = result[1];
+        System.out.printf("%-40s %12.1f %14.1f %10d %10d%n", benchmark.name, (double) nanos / ops,
+                (double) allocated / ops, gcCount() - gcCountBefore, gcMillis() - gcTimeBefore);
+    }
+
+    // Returns a batch size that takes roughly a millisecond, so timer overhead is negligible.
+    static int batchSize(Benchmark benchmark) {
+        int batch = 1;
+        while (true) {
+            long start = System.nanoTime();
+            sink += benchmark.operation.run(batch);
+            if (System.nanoTime() - start > 1_000_000L || batch >= 1 << 24) {
+                return batch;
+            }
+            batch *= 2;
+        }
+    }
+
+    // Runs batches until the duration has passed and at least minOps operations ran,
+    // storing {operations, elapsed nanos} in result.
+    static void runFor(Benchmark benchmark, int batch, long duration, long minOps, long[] result) {
+        long ops = 0;
+        long start = System.nanoTime();
+        long elapsed;
+        do {
+            sink += benchmark.operation.run(batch);
+            ops += batch;
+            elapsed = System.nanoTime() - start;
+        } while (elapsed < duration || ops < minOps);
+        result[0] = ops;
+        result[1] = elapsed;
+    }
+
+    private static long gcCount() {
+        long count = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(0, gc.getCollectionCount());
+        }
+        return count;
+    }
+
+    private static long gcMillis() {
+        long millis = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            millis += Math.max(0, gc.getCollectionTime());
+        }
+        return millis;
+    }
+
+    public static void main(String[] args) {
+        String filter = args.length > 0 ? args[0] : "";
+        long measureMillis = args.length > 1 ? Long.parseLong(args[1]) : 2000;
+
+        try (EngineBenchmark bench = new EngineBenchmark(measureMillis)) {
+            bench.defineBenchmarks();
+            bench.runAll(filter);
+        }
+    }
+}
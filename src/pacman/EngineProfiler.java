@@ -0,0 +1,72 @@
+package pacman;
+
+// Collects per-phase tick timings and per-frame render timings for one engine.
+// Samples accumulate over a rolling window; the last completed window is what gets reported.
+// All recording and reading happens on the game loop thread.
+public class EngineProfiler {
+    public static final int PACMAN_COLLISIONS = 0;
+    public static final int PELLETS = 1;
+    public static final int POWER_PELLETS = 2;
+    public static final int PACMAN_DIRECTION = 3;
+    public static final int PACMAN_MOVE = 4;
+    public static final int GHOSTS = 5;
+    public static final int GHOST_COLLISIONS = 6;
+    public static final int TICK = 7;
+    public static final int DRAW = 8;
+    public static final int FRAME = 9;
+
+    private static final String[] NAMES = {
+        "pacman collisions", "pellets", "power pellets", "pacman direction",
+        "pacman move", "ghosts", "ghost collisions", "tick total", "draw", "frame"
+    };
+
+    private static final long WINDOW_NANOS = 2_000_000_000L;
+
+    private final LatencyHistogram[] current = new LatencyHistogram[NAMES.length];
+    private final LatencyHistogram[] reported = new LatencyHistogram[NAMES.length];
+    private long windowStart = System.nanoTime();
+    private int windowCount; // Completed windows, so readers can tell when the reported figures changed.
+
+    // Constructs a profiler with empty histograms for every measurement.
+    public EngineProfiler() {
+        for (int i = 0; i < NAMES.length; i++) {
+            current[i] = new LatencyHistogram();
+            reported[i] = new LatencyHistogram();
+        }
+    }
+
+    // Records one sample for a measurement.
+    public void record(int measurement, long nanos) {
+        current[measurement].record(nanos);
+    }
+
+    // Publishes the current window once it is old enough and starts a new one.
+    public void rollWindow(long now) {
+        if (now - windowStart < WINDOW_NANOS) {
+            return;
+        }
+        for (int i = 0; i < NAMES.length; i++) {
+            reported[i].copyFrom(current[i]);
+            current[i].reset();
+        }
+        windowStart = now;
+        windowCount++;
+    }
+
+    public int getWindowCount() {
+        return windowCount;
+    }
+
+    public int getMeasurementCount() {
+        return NAMES.length;
+    }
+
+    public String getName(int measurement) {
+        return NAMES[measurement];
+    }
+
+    // Returns the histogram of the last completed window for a measurement.
+    public LatencyHistogram getReported(int measurement) {
+        return reported[measurement];
+    }
+}
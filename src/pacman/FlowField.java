@@ -0,0 +1,101 @@
+package pacman;
+
+import java.util.Arrays;
+
+// Shortest-path distances from one open tile (the source) to every other, shared by all the ghosts of a game.
+// Ghosts only ever ask how far they are from Pacman, so the engine keeps this single field with Pacman's
+// tile as the source and restarts it when Pacman reaches a new tile. A ghost then chases by stepping to a
+// neighbor with a smaller distance, or flees to one with a larger distance, in a couple of array reads:
+// the AI's cost is O(open tiles) per source whatever the number of ghosts, and memory grows linearly with
+// the maze, so it works on mazes of any size.
+//
+// The breadth-first search is lazy: a query runs it only until the asked-for node is reached, and later
+// queries resume where it stopped. On a large maze a source change therefore costs the region around
+// Pacman out to the farthest ghost that asks, not the whole maze. Entries are stamped with the source's
+// generation, so restarting the search does not clear the arrays either.
+public final class FlowField {
+    private final MazeTopology topology;
+    private final int[] distances; // node -> steps to the source; valid when stamps[node] == generation
+    private final int[] stamps;
+    private final int[] queue;     // Nodes reached by the search; those from head on are not expanded yet.
+    private int head;
+    private int tail;
+    private int generation;
+    private int source = -1;
+
+    public FlowField(MazeTopology topology) {
+        this.topology = topology;
+        distances = new int[topology.getOpenTileCount()];
+        stamps = new int[distances.length];
+        queue = new int[Math.max(1, distances.length)];
+    }
+
+    // Makes the field measure distances to a node, or to nothing for -1. Only restarts the search when the
+    // source changes, so it can be called before every query. Allocates nothing.
+    public void setSource(int node) {
+        if (node == source) {
+            return;
+        }
+        source = node;
+        if (node < 0) {
+            return;
+        }
+        if (++generation == 0) {
+            // Wrapped around: old stamps could now look current.
+            Arrays.fill(stamps, 0);
+            generation = 1;
+        }
+        head = 0;
+        tail = 0;
+        reach(node, 0);
+    }
+
+    // Returns the current source node, or -1 if there is none.
+    public int getSource() {
+        return source;
+    }
+
+    // Returns the path length in tiles from a node to the source, or UNREACHABLE if there is no path or no source.
+    public int distance(int node) {
+        if (source < 0) {
+            return MazeTopology.UNREACHABLE;
+        }
+        int[] stamp = stamps;
+        int current = generation;
+        while (stamp[node] != current) {
+            if (head == tail) {
+                return MazeTopology.UNREACHABLE; // Searched the source's whole region without reaching it.
+            }
+            expand(queue[head++]);
+        }
+        return distances[node];
+    }
+
+    // Runs the search until every node within a number of steps of the source has been reached. Afterwards
+    // distance() only reads for those nodes (and for any node, once the whole region is searched), so several
+    // threads may query them at once.
+    public void reachDistance(int steps) {
+        if (source < 0) {
+            return;
+        }
+        while (head < tail && distances[queue[head]] < steps) {
+            expand(queue[head++]);
+        }
+    }
+
+    private void expand(int node) {
+        int nextDistance = distances[node] + 1;
+        for (int d = 0; d < 4; d++) {
+            int next = topology.neighbor(node, d);
+            if (next >= 0 && stamps[next] != generation) {
+                reach(next, nextDistance);
+            }
+        }
+    }
+
+    private void reach(int node, int distance) {
+        distances[node] = distance;
+        stamps[node] = generation;
+        queue[tail++] = node;
+    }
+}
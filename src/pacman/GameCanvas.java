@@ -0,0 +1,132 @@
+package pacman;
+
+import java.awt.Canvas;
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.Toolkit;
+import java.awt.event.KeyAdapter;
+import java.awt.event.KeyEvent;
+import java.awt.image.BufferStrategy;
+
+// Heavyweight surface the game loop renders to directly through a BufferStrategy, bypassing Swing repaints.
+public class GameCanvas extends Canvas {
+    private static final int BUFFERS = 2;
+
+    private final Font gameFont = new Font("Arial", Font.BOLD, 24);
+    private final Font overlayFont = new Font(Font.MONOSPACED, Font.PLAIN, 14);
+    private final double scale = 0.9;
+    private final Color overlayBackground = new Color(0, 0, 0, 180);
+    private volatile boolean overlayVisible;
+    // Overlay text for the profiler window it was formatted from; reformatted only when a new window is reported.
+    private String[] overlayLines;
+    private EngineProfiler overlayProfiler;
+    private int overlayWindow;
+
+    // Constructs the canvas; AWT repaint requests are ignored because the game loop paints actively.
+    public GameCanvas() {
+        setBackground(Color.BLACK);
+        setIgnoreRepaint(true);
+        setFocusable(true);
+
+        // F3 toggles the timing overlay.
+        addKeyListener(new KeyAdapter() {
+            @Override
+            public void keyPressed(KeyEvent e) {
+                if (e.getKeyCode() == KeyEvent.VK_F3) {
+                    overlayVisible = !overlayVisible;
+                }
+            }
+        });
+    }
+
+    // Renders one frame of the engine, with sprites interpolated by alpha between logic ticks.
+    // Called from the game loop thread; synchronized in case a loop whose stop() was interrupted is still
+    // drawing its last frame when the next loop starts.
+    public synchronized void render(GameEngine engine, double alpha) {
+        if (!isDisplayable()) {
+            return; // Removed from the window; nothing to draw into.
+        }
+        BufferStrategy strategy = getBufferStrategy();
+        if (strategy == null) {
+            createBufferStrategy(BUFFERS);
+            return;
+        }
+        // Repeat until the frame survives: buffers backed by video memory can be lost at any time.
+        do {
+            do {
+                Graphics g = strategy.getDrawGraphics();
+                try {
+                    paintFrame((Graphics2D) g, engine, alpha);
+                } finally {
+                    g.dispose();
+                }
+            } while (strategy.contentsRestored());
+            strategy.show();
+        } while (strategy.contentsLost());
+        Toolkit.getDefaultToolkit().sync();
+    }
+
+    // Draws the maze, sprites and HUD into a back buffer.
+    private void paintFrame(Graphics2D g2d, GameEngine engine, double alpha) {
+        g2d.setColor(getBackground());
+        g2d.fillRect(0, 0, getWidth(), getHeight());
+
+        // Enable anti-aliasing for smoother graphics.
+        // https://docs.oracle.com/javase/8/docs/api/java/awt/Graphics2D.html
+        g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        g2d.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+
+        // Apply scaling to the game graphics, then undo it for the HUD.
+        g2d.scale(scale, scale);
+        engine.draw(g2d, alpha);
+        g2d.scale(1 / scale, 1 / scale);
+
+        g2d.setFont(gameFont);
+        g2d.setColor(Color.WHITE);
+        // Draw game time and score.
+        g2d.drawString(engine.getTimeString(), 20, 30);
+        g2d.drawString(engine.getScoreString(), 20, 60);
+
+        if (overlayVisible && engine.getProfiler() != null) {
+            paintTimingOverlay(g2d, engine.getProfiler());
+        }
+    }
+
+    // Draws p50/p99/max of every tick phase and of frame rendering, in microseconds.
+    private void paintTimingOverlay(Graphics2D g2d, EngineProfiler profiler) {
+        if (overlayLines == null || profiler != overlayProfiler || profiler.getWindowCount() != overlayWindow) {
+            overlayLines = formatTimings(profiler);
+            overlayProfiler = profiler;
+            overlayWindow = profiler.getWindowCount();
+        }
+
+        int lineHeight = 18;
+        int x = 20;
+        int y = 90;
+        g2d.setColor(overlayBackground);
+        g2d.fillRect(x - 8, y - lineHeight, 420, overlayLines.length * lineHeight + 10);
+
+        g2d.setFont(overlayFont);
+        g2d.setColor(Color.GREEN);
+        for (String line : overlayLines) {
+            g2d.drawString(line, x, y);
+            y += lineHeight;
+        }
+    }
+
+    // Formats the overlay text for the profiler's last completed window.
+    private static String[] formatTimings(EngineProfiler profiler) {
+        String[] lines = new String[profiler.getMeasurementCount() + 1];
+        lines[0] = String.format("%-18s %8s %8s %8s", "(us, last 2 s)", "p50", "p99", "max");
+        for (int i = 0; i < profiler.getMeasurementCount(); i++) {
+            LatencyHistogram h = profiler.getReported(i);
+            lines[i + 1] = String.format("%-18s %8.1f %8.1f %8.1f", profiler.getName(i),
+                    h.getValueAtPercentile(50) / 1000.0, h.getValueAtPercentile(99) / 1000.0,
+                    h.getMax() / 1000.0);
+        }
+        return lines;
+    }
+}
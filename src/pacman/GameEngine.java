@@ -0,0 +1,1359 @@
+package pacman;
+
+import java.awt.Graphics;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+public class GameEngine {
+    private Pacman pacman;
+    private ArrayList<Ghost> ghosts; // Views over ghostPool, for callers that want objects.
+    private GhostPool ghostPool;
+    private int[] collisionCandidates; // Scratch for the ghosts near Pacman, filled by the grid each tick.
+
+    // Scratch buffers reused every tick so that update() allocates nothing; ghost AI scratch is per thread.
+    private GhostScratch[] ghostScratch = {new GhostScratch()};
+    private int[] snapQueue;        // Tile indices waiting to be visited by snapPacmanToNearestFree.
+    private TileBitSet snapVisited;
+    private Maze maze;
+    private MazeTopology topology;
+    private JunctionGraph junctions;
+    private FlowField pacmanField; // Distances to Pacman's tile, shared by every ghost.
+    private WorkerGang ghostGang;   // Optional; moves large swarms of ghosts in parallel.
+    private final WorkerGang.Job ghostJob = this::moveGhosts;
+    private long ghostTickKey;     // Key of this tick's ghost random streams, one per ghost.
+    private MazeRenderer renderer;
+    private Camera camera;
+    private EngineProfiler profiler; // Optional; null disables timing entirely.
+    private int level;
+    private boolean gameOver;
+    private boolean gameWon;
+    private int score;
+    private int totalPellets;
+    private long startTime;
+    private String timeString;
+    private long timeStringSeconds = -1; // Elapsed second timeString was built for.
+    private String scoreString;
+    private int scoreStringValue;
+    private boolean phaseMode;
+    // The input in force, latched by update() at the start of every tick; see encodeInput(). The keyboard
+    // thread queues changes to it in keyInputs, one taken a tick, and keeps its own copy in keyInput.
+    private int input;
+    private final SpscQueue keyInputs = new SpscQueue(KEY_INPUT_CAPACITY);
+    private int keyInput;
+    private ReplayLog recording;   // Optional log of every input change.
+    private int recordedInput;
+    private ReplayPlayer replay;   // Optional source of input replacing the keyboard.
+    private int prefDirX;
+    private int prefDirY;
+    private int currDirX;
+    private int currDirY;
+    private GameListener listener;
+    private int rows;
+    private int cols;
+    private int tileSize;
+    private int xOffset;
+    private int yOffset;
+    private int updateCounter = 0;
+    private long tickCount = 0;
+    private TileBitSet pellets;
+    private TileBitSet bigPellets;
+    private int pelletVersion = 0; // Bumped whenever either kind of pellet changes, so views can update incrementally.
+    private int powerTimer = 0;
+    private final GameRandom random;
+    private long seed;
+    // Scratch space for reset(), allocated by the first one.
+    private int[] resetQueue;
+    private TileBitSet resetRejected;
+    private TileBitSet resetReachable;
+    private int[] housePelletRows;
+    private static final int POWER_DURATION = 400;
+    private static final int FLASH_START = 150;
+
+    // Number of logic ticks per second of game time; ghost release delays are measured in ticks.
+    public static final int LOGIC_FPS = 30;
+    private static final int FLASH_INTERVAL_TICKS = LOGIC_FPS / 4; // Ticks between flashing ghosts' colour swaps.
+
+    private static final int GHOST_SPAWN_INTERVAL_SECONDS = 5;
+    private static final int GHOST_MOVE_FREQUENCY = 5;
+    public static final int DEFAULT_GHOST_COUNT = 4;
+    // Fewest ghosts worth splitting across a gang's threads; smaller games move them on one thread.
+    private static final int MIN_PARALLEL_GHOSTS = 1024;
+
+    // Tick input: a direction code (0 for none, else 1 + a MazeTopology direction) and flags.
+    public static final int INPUT_DIRECTION_MASK = 7;
+    public static final int INPUT_PHASE = 8;
+    public static final int INPUT_CLEAR = 16;
+    private static final int KEY_INPUT_CAPACITY = 16;
+    // Ghost colours as 0xRRGGBB, by spawn slot: grey, pink, cyan and yellow.
+    private static final int[] GHOST_COLORS = {0x808080, 0xFFAFAF, 0x00FFFF, 0xFFFF00};
+
+    // Snapshot layout: a fixed-size setup and state header, then the ghosts and the two pellet bitmaps.
+    private static final int SNAPSHOT_MAGIC = 0x504D5331; // "PMS1"
+    static final int SNAPSHOT_SETUP_SIZE = 8 * Integer.BYTES + Long.BYTES;
+    private static final int SNAPSHOT_STATE_SIZE = 2 * Long.BYTES + 8 * Integer.BYTES + 5;
+
+    // Constructs the game engine with a random seed.
+    public GameEngine(int width, int height) {
+        this(width, height, GameRandom.randomSeed());
+    }
+
+    // Constructs the game engine with the standard four ghosts.
+    // Games built with the same seed and fed the same input play out identically.
+    public GameEngine(int width, int height, long seed) {
+        this(width, height, seed, DEFAULT_GHOST_COUNT);
+    }
+
+    // Constructs the game engine on the standard maze.
+    public GameEngine(int width, int height, long seed, int ghostCount) {
+        this(Maze.standard(), width, height, seed, ghostCount);
+    }
+
+    // Constructs the game engine on a maze, centered in a width x height area with the largest tiles that fit.
+    public GameEngine(Maze maze, int width, int height, long seed, int ghostCount) {
+        this(maze, fitTileSize(maze, width, height),
+                (width - maze.getWidth() * fitTileSize(maze, width, height)) / 2,
+                (height - maze.getHeight() * fitTileSize(maze, width, height)) / 2,
+                seed, ghostCount);
+        camera.setViewSize(width, height);
+    }
+
+    // Constructs the game engine on a maze with a fixed tile size and the maze's corner at the origin,
+    // for mazes too large to fit on screen. The camera shows the whole maze until its view size is set.
+    public GameEngine(Maze maze, int tileSize, long seed, int ghostCount) {
+        this(maze, tileSize, 0, 0, seed, ghostCount);
+    }
+
+    // Constructs the game engine, initializing Pacman, ghosts, and pellets from the maze.
+    // Ghosts beyond the maze's spawn tiles reuse its spawns, with the four colors and release delays in turn.
+    GameEngine(Maze maze, int tileSize, int xOffset, int yOffset, long seed, int ghostCount) {
+        this.random = new GameRandom(seed);
+        this.seed = seed;
+        this.maze = maze;
+        this.rows = maze.getHeight();
+        this.cols = maze.getWidth();
+        this.tileSize = tileSize;
+        this.xOffset = xOffset;
+        this.yOffset = yOffset;
+        this.camera = new Camera(cols * tileSize, rows * tileSize);
+
+        topology = maze.getTopology();
+        junctions = maze.getJunctions();
+        pacmanField = new FlowField(topology);
+        walls = maze.getWalls();
+        housePelletRows = maze.getHousePelletRows();
+        pellets = new TileBitSet(rows, cols);
+        bigPellets = new TileBitSet(rows, cols);
+        pacman = new Pacman(xOffset, yOffset, tileSize);
+
+        ghosts = new ArrayList<Ghost>(ghostCount);
+        ghostPool = new GhostPool(ghostCount, tileSize, rows, cols, xOffset, yOffset);
+        collisionCandidates = new int[ghostCount];
+
+        // Initialize ghosts with their starting positions, colors, and release delays.
+        int spawnCount = maze.getGhostSpawnCount();
+        for (int i = 0; i < ghostCount; i++) {
+            int slot = i % spawnCount;
+            int gx = xOffset + maze.getGhostSpawnCol(slot) * tileSize;
+            int gy = yOffset + maze.getGhostSpawnRow(slot) * tileSize;
+            long delaySec = (slot + 1) * GHOST_SPAWN_INTERVAL_SECONDS;
+            ghosts.add(ghostPool.add(gx, gy, GHOST_COLORS[slot % GHOST_COLORS.length], delaySec));
+        }
+
+        // The scratch space is only kept by engines that are reset.
+        placePacmanAndPellets(new TileBitSet(rows, cols), new TileBitSet(rows, cols),
+                new int[Math.max(1, topology.getOpenTileCount())]);
+        pellets.compact();
+    }
+
+    // Starts a new game on the same maze, as if the engine had just been built with the given seed.
+    // The engine's memory is reused: after the first reset, which sets aside scratch space for placing
+    // Pacman, resets allocate nothing unless pellets spread to parts of the maze they had not reached.
+    // Any recording or replay is detached, and keys still queued for the old game are dropped; the listener,
+    // profiler and camera stay. Like update(), call it from the thread that ticks the engine.
+    public void reset(long seed) {
+        this.seed = seed;
+        random.setState(seed);
+        if (resetQueue == null) {
+            resetQueue = new int[Math.max(1, topology.getOpenTileCount())];
+            // Only power pellet tiles are ever rejected, often many resets in; give their chunks arrays now.
+            resetRejected = new TileBitSet(rows, cols);
+            resetRejected.copyFrom(maze.getPowerPellets());
+            resetRejected.clearAll();
+            resetReachable = new TileBitSet(rows, cols);
+        } else {
+            resetRejected.clearAll();
+            resetReachable.clearAll();
+        }
+        placePacmanAndPellets(resetRejected, resetReachable, resetQueue);
+        ghostPool.respawnAll();
+        tickCount = 0;
+        updateCounter = 0;
+        powerTimer = 0;
+        phaseMode = false;
+        prefDirX = 0;
+        prefDirY = 0;
+        currDirX = 0;
+        currDirY = 0;
+        input = 0;
+        resyncKeyInput();
+        recording = null;
+        replay = null;
+        pelletVersion++;
+    }
+
+    // Picks Pacman's start from the random generator, moves him there and lays out the pellets he can reach.
+    // rejected and reachable must be clear; queue needs a slot per open tile.
+    private void placePacmanAndPellets(TileBitSet rejected, TileBitSet reachable, int[] queue) {
+        TileBitSet powerPellets = maze.getPowerPellets();
+        // Pacman may start on any open tile outside the ghost house and the rows just around it.
+        int excludedTop = maze.getHouseTop() - 1;
+        int excludedBottom = maze.getHouseBottom() + 1;
+        int validCount = 0;
+        for (int r = 0; r < rows; r++) {
+            if (r >= excludedTop && r <= excludedBottom) {
+                continue;
+            }
+            for (int c = 0; c < cols; c++) {
+                if (!walls.get(r, c) && !isGhostSpawnArea(r, c)) {
+                    validCount++;
+                }
+            }
+        }
+
+        int startX = 0;
+        int startY = 0;
+        int startRow = 0, startCol = 0;
+        boolean found = false;
+
+        // Find a random valid starting position for Pacman, avoiding big pellet locations. Rejected tiles are
+        // dropped from the candidates and the pick repeated, so the k-th pick skips them; the candidates
+        // themselves are counted rather than listed, which keeps start-up linear in memory on huge mazes.
+        while (!found && validCount > 0) {
+            int randomIndex = random.nextInt(validCount);
+            int position = nthStartTile(randomIndex, excludedTop, excludedBottom, rejected);
+            startRow = position / cols;
+            startCol = position % cols;
+
+            if (!powerPellets.get(startRow, startCol)) {
+                found = true;
+                startX = xOffset + startCol * tileSize;
+                startY = yOffset + startRow * tileSize;
+            } else {
+                rejected.set(startRow, startCol); // Remove big pellet spot and retry.
+                validCount--;
+            }
+        }
+
+        // Determine reachable areas for pellets using BFS from Pacman's start.
+        // Each tile is queued at most once, so the queue needs one slot per open tile.
+        int head = 0;
+        int tail = 0;
+        queue[tail++] = startRow * cols + startCol;
+        reachable.set(startRow, startCol);
+        while (head < tail) {
+            int cell = queue[head++];
+            int r = cell / cols, c = cell % cols;
+            for (int[] d : SNAP_DIRECTIONS) {
+                int nr = r + d[0];
+                int nc = c + d[1];
+                // Handle horizontal wrapping (tunnel effect).
+                if (nc < 0) nc = cols - 1;
+                if (nc >= cols) nc = 0;
+                if (nr >= 0 && nr < rows && !reachable.get(nr, nc) && !walls.get(nr, nc) && !isGhostSpawnArea(nr, nc)) {
+                    reachable.set(nr, nc);
+                    queue[tail++] = nr * cols + nc;
+                }
+            }
+        }
+
+        // Mark the maze's pellet rows within the ghost house as reachable if they are open paths.
+        for (int er : housePelletRows) {
+            if (er >= 0 && er < rows) {
+                for (int c = maze.getHouseLeft(); c <= maze.getHouseRight(); c++) {
+                    if (!walls.get(er, c)) {
+                        reachable.set(er, c);
+                    }
+                }
+            }
+        }
+
+        // Finalize pellet placement based on reachability, excluding edge columns.
+        pellets.clearAll();
+        for (int i = reachable.nextSetBit(0); i >= 0; i = reachable.nextSetBit(i + 1)) {
+            int c = i % cols;
+            if (c != 0 && c != cols - 1) { // Exclude tunnel entrance/exit columns.
+                pellets.set(i / cols, c);
+            }
+        }
+
+        totalPellets = pellets.cardinality();
+        score = totalPellets;
+
+        pacman.setX(startX);
+        pacman.setY(startY);
+        pacman.setDx(0);
+        pacman.setDy(0);
+        pacman.savePosition();
+        level = 1;
+        gameOver = false;
+        gameWon = false;
+        
+        // Place big pellets only in reachable locations.
+        bigPellets.clearAll();
+        for (int i = powerPellets.nextSetBit(0); i >= 0; i = powerPellets.nextSetBit(i + 1)) {
+            if (reachable.get(i)) {
+                bigPellets.set(i);
+            }
+        }
+    }
+
+    // Returns the largest tile size at which a whole maze fits in a width x height area.
+    private static int fitTileSize(Maze maze, int width, int height) {
+        return Math.max(1, Math.min(width / maze.getWidth(), height / maze.getHeight()));
+    }
+
+    // Returns the tile index of the n-th possible Pacman start in row-major order, skipping rejected tiles.
+    private int nthStartTile(int n, int excludedTop, int excludedBottom, TileBitSet rejected) {
+        for (int r = 0; r < rows; r++) {
+            if (r >= excludedTop && r <= excludedBottom) {
+                continue;
+            }
+            for (int c = 0; c < cols; c++) {
+                if (!walls.get(r, c) && !isGhostSpawnArea(r, c) && !rejected.get(r, c) && n-- == 0) {
+                    return r * cols + c;
+                }
+            }
+        }
+        throw new IllegalStateException("Fewer start tiles than counted");
+    }
+
+    // Checks if a given tile (row, col) is within the ghost spawn area.
+    public boolean isGhostSpawnArea(int row, int col) {
+        return maze.isInHouse(row, col);
+    }
+
+    // Checks if a given tile (row, col) is within the maze boundaries.
+    public boolean isInsideMazeBoundary(int row, int col) {
+        return row >= 0 && row < rows && col >= 0 && col < cols;
+    }
+
+    // Wall bits shared with the maze.
+    private TileBitSet walls;
+    
+    // Checks if a given rectangular area collides with any walls using the wall bit set.
+    boolean collidesWithWalls(int testX, int testY, int width, int height) {
+        // Convert pixel coordinates to tile coordinates for collision checking.
+        int left = testX;
+        int right = testX + width - 1;
+        int top = testY;
+        int bottom = testY + height - 1;
+        int leftCol = (left - xOffset) / tileSize;
+        int rightCol = (right - xOffset) / tileSize;
+        int topRow = (top - yOffset) / tileSize;
+        int bottomRow = (bottom - yOffset) / tileSize;
+        
+        // Check if the area is outside maze boundaries.
+        if (leftCol < 0 || rightCol >= cols || topRow < 0 || bottomRow >= rows) {
+            return true; // Collision if outside boundaries.
+        }
+        
+        // Mask each covered row's span of tiles against the wall bits.
+        return walls.anyInRect(topRow, leftCol, bottomRow, rightCol);
+    }
+    
+    // Checks if a sprite collides with walls at a test position.
+    public boolean collides(int testX, int testY) {
+        return collidesWithWalls(testX, testY, pacman.getWidth(), pacman.getHeight());
+    }
+    
+    private boolean collides(Sprite s, int testX, int testY) {
+        return collidesWithWalls(testX, testY, s.getWidth(), s.getHeight());
+    }
+
+    // Determines if a sprite can move in a given direction by a certain speed without colliding.
+    private boolean canMove(Sprite s, int dirX, int dirY, int speed) {
+        if (dirX == 0 && dirY == 0) {
+            return false; // Cannot move if no direction is specified.
+        }
+        // Check for collision at the potential new position.
+        return !collides(s, s.getX() + dirX * speed, s.getY() + dirY * speed);
+    }
+    
+    // Determines if Pacman can move in a given direction.
+    public boolean canMove(int dirX, int dirY) {
+        if (dirX == 0 && dirY == 0) {
+            return false;
+        }
+        return !collides(pacman.getX() + dirX, pacman.getY() + dirY);
+    }
+    
+    // Up, down, left, right as {row, col} steps, the order snapPacmanToNearestFree explores in.
+    private static final int[][] SNAP_DIRECTIONS = {{-1, 0}, {1, 0}, {0, -1}, {0, 1}};
+
+    // Snaps Pacman to the center of the nearest free (non-wall) tile using BFS.
+    public void snapPacmanToNearestFree() {
+        int pw = pacman.getWidth();
+        int ph = pacman.getHeight();
+        // Current center of Pacman in tile coordinates.
+        int cx = pacman.getX() + pw / 2;
+        int cy = pacman.getY() + ph / 2;
+        int startCol = (cx - xOffset) / tileSize;
+        int startRow = (cy - yOffset) / tileSize;
+        // Clamp starting tile to be within maze bounds.
+        if (startRow < 0) startRow = 0;
+        else if (startRow >= rows) startRow = rows - 1;
+        if (startCol < 0) startCol = 0;
+        else if (startCol >= cols) startCol = cols - 1;
+        
+        // The queue and visited set are kept between calls; each tile is queued at most once,
+        // so an array with one slot per tile is a large enough queue.
+        if (snapQueue == null) {
+            snapQueue = new int[rows * cols];
+            snapVisited = new TileBitSet(rows, cols);
+        }
+        int[] queue = snapQueue;
+        TileBitSet visited = snapVisited;
+        visited.clearAll();
+        int head = 0;
+        int tail = 0;
+        queue[tail++] = startRow * cols + startCol;
+        visited.set(startRow, startCol);
+        int foundRow = -1, foundCol = -1;
+        
+        // BFS to find the closest non-wall tile.
+        while (head < tail) {
+            int cell = queue[head++];
+            int r = cell / cols, c = cell % cols;
+            if (!walls.get(r, c)) { // Found a free tile.
+                foundRow = r;
+                foundCol = c;
+                break;
+            }
+            for (int[] d : SNAP_DIRECTIONS) {
+                int nr = r + d[0];
+                int nc = c + d[1];
+                // Explore adjacent valid, unvisited tiles.
+                if (nr >= 0 && nr < rows && nc >= 0 && nc < cols && !visited.get(nr, nc)) {
+                    visited.set(nr, nc);
+                    queue[tail++] = nr * cols + nc;
+                }
+            }
+        }
+        // If a free tile is found, move Pacman to its center.
+        if (foundRow >= 0) {
+            int newX = xOffset + foundCol * tileSize;
+            int newY = yOffset + foundRow * tileSize;
+            pacman.setX(newX);
+            pacman.setY(newY);
+        }
+    }
+
+    // Sets the listener notified of game events on the updating thread; may be null for headless runs.
+    public void setGameListener(GameListener listener) {
+        this.listener = listener;
+    }
+
+    // Notifies the listener, if any, of an event.
+    private void fireEvent(int type, int arg) {
+        if (listener != null) {
+            listener.gameEvent(this, type, arg);
+        }
+    }
+
+    // Ends the recording, if any, and notifies the listener that the game has ended.
+    private void fireGameEnded(int type, int arg) {
+        if (recording != null && !recording.isFinished()) {
+            recording.finish(tickCount);
+        }
+        fireEvent(type, arg);
+    }
+
+    // Advances the game by one tick with the given preferred direction for Pacman: a unit step, or (0, 0).
+    public void step(int dirX, int dirY) {
+        input = encodeInput(dirX, dirY, input & INPUT_PHASE);
+        update();
+    }
+
+    // Encodes a preferred direction (a unit step or none) and flags as a tick input.
+    public static int encodeInput(int dirX, int dirY, int flags) {
+        return (dirX == 0 && dirY == 0 ? 0 : 1 + directionIndex(dirX, dirY)) | flags;
+    }
+
+    // Starts recording this game's input into a new log, which is finished when the game ends.
+    // Call before the first tick for the log to replay the whole game.
+    public ReplayLog startRecording() {
+        recording = new ReplayLog(seed, ghostPool.size(), tileSize, xOffset, yOffset, maze);
+        recordedInput = 0;
+        return recording;
+    }
+
+    // Returns the log being recorded, or null.
+    public ReplayLog getRecording() {
+        return recording;
+    }
+
+    // Makes a replay supply the input of every tick from now on; keyboard input and step() are then ignored.
+    public void setReplay(ReplayPlayer replay) {
+        this.replay = replay;
+    }
+
+    public boolean isReplaying() {
+        return replay != null;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    // Returns the number of bytes saveSnapshot() writes; fixed for the life of the engine.
+    public int getSnapshotSize() {
+        return SNAPSHOT_SETUP_SIZE + SNAPSHOT_STATE_SIZE + ghostPool.stateSize() + pellets.packedSize() + bigPellets.packedSize();
+    }
+
+    // Writes the game's state between ticks: the setup it needs to be restored into (maze, geometry,
+    // ghost count and seed), then the clock, score, power timer, random generator, Pacman, the ghosts and
+    // both pellet bitmaps, in the buffer's byte order. Writes getSnapshotSize() bytes and allocates nothing,
+    // so it can run every tick.
+    public void saveSnapshot(ByteBuffer out) {
+        out.putInt(SNAPSHOT_MAGIC).putInt(cols).putInt(rows).putInt(maze.getChecksum());
+        out.putInt(tileSize).putInt(xOffset).putInt(yOffset).putInt(ghostPool.size()).putLong(seed);
+
+        out.putLong(tickCount).putLong(random.getState());
+        out.putInt(score).putInt(powerTimer).putInt(level).putInt(updateCounter);
+        out.putInt(pacman.getX()).putInt(pacman.getY()).putInt(pacman.getDx()).putInt(pacman.getDy());
+        out.put((byte) prefDirX).put((byte) prefDirY).put((byte) currDirX).put((byte) currDirY);
+        out.put((byte) ((gameOver ? 1 : 0) | (gameWon ? 2 : 0) | (phaseMode ? 4 : 0)));
+        ghostPool.saveState(out);
+        pellets.writeTo(out);
+        bigPellets.writeTo(out);
+    }
+
+    // Puts the game back in the state a snapshot was taken in. The snapshot must come from an engine with
+    // the same maze, geometry and ghost count; the seed may differ, as everything it decided is restored.
+    // Restoring detaches any recording or replay, whose ticks no longer line up, and drops queued key changes.
+    // Pacman keeps heading the way he was, in phase mode if he was in it, until new input arrives.
+    // Allocates nothing once the pellets have been restored once.
+    public void restoreSnapshot(ByteBuffer in) {
+        if (in.getInt() != SNAPSHOT_MAGIC) {
+            throw new IllegalArgumentException("Not an engine snapshot");
+        }
+        if (in.getInt() != cols || in.getInt() != rows || in.getInt() != maze.getChecksum()
+                || in.getInt() != tileSize || in.getInt() != xOffset || in.getInt() != yOffset
+                || in.getInt() != ghostPool.size()) {
+            throw new IllegalArgumentException("Snapshot was taken of a game with a different setup");
+        }
+        in.getLong(); // Seed.
+
+        tickCount = in.getLong();
+        random.setState(in.getLong());
+        score = in.getInt();
+        powerTimer = in.getInt();
+        level = in.getInt();
+        updateCounter = in.getInt();
+        pacman.setX(in.getInt());
+        pacman.setY(in.getInt());
+        pacman.setDx(in.getInt());
+        pacman.setDy(in.getInt());
+        pacman.savePosition();
+        prefDirX = in.get();
+        prefDirY = in.get();
+        currDirX = in.get();
+        currDirY = in.get();
+        int status = in.get();
+        gameOver = (status & 1) != 0;
+        gameWon = (status & 2) != 0;
+        phaseMode = (status & 4) != 0;
+        ghostPool.restoreState(in);
+        pellets.readFrom(in);
+        bigPellets.readFrom(in);
+        pelletVersion++;
+
+        input = encodeInput(prefDirX, prefDirY, phaseMode ? INPUT_PHASE : 0);
+        resyncKeyInput();
+        recording = null;
+        replay = null;
+    }
+
+    // Builds an engine on a maze from a snapshot, as it was when the snapshot was taken.
+    public static GameEngine fromSnapshot(Maze maze, ByteBuffer in) {
+        int start = in.position();
+        if (in.getInt(start) != SNAPSHOT_MAGIC) {
+            throw new IllegalArgumentException("Not an engine snapshot");
+        }
+        int tileSize = in.getInt(start + 16);
+        int xOffset = in.getInt(start + 20);
+        int yOffset = in.getInt(start + 24);
+        int ghostCount = in.getInt(start + 28);
+        long seed = in.getLong(start + 32);
+        if (in.getInt(start + 4) != maze.getWidth() || in.getInt(start + 8) != maze.getHeight()) {
+            throw new IllegalArgumentException("Snapshot was taken on a different maze");
+        }
+        GameEngine engine = new GameEngine(maze, tileSize, xOffset, yOffset, seed, ghostCount);
+        engine.restoreSnapshot(in);
+        return engine;
+    }
+
+    // Latches this tick's input, records it if it changed, and applies it.
+    private void applyInput() {
+        long tick = tickCount - 1; // The tick being run, counting from 0.
+        int tickInput;
+        if (replay != null) {
+            tickInput = replay.inputAt(tick);
+        } else {
+            // One queued key change a tick, so that a quick tap between two ticks still gets a tick of its own.
+            long queued = keyInputs.poll();
+            if (queued != SpscQueue.EMPTY) {
+                input = (int) queued & ~INPUT_CLEAR;
+                tickInput = (int) queued;
+            } else {
+                tickInput = input;
+            }
+        }
+        if (recording != null && tickInput != recordedInput && !recording.isFinished()) {
+            recording.record(tick, tickInput);
+            recordedInput = tickInput;
+        }
+
+        int direction = (tickInput & INPUT_DIRECTION_MASK) - 1;
+        prefDirX = direction >= 0 ? MazeTopology.DIR_X[direction] : 0;
+        prefDirY = direction >= 0 ? MazeTopology.DIR_Y[direction] : 0;
+        phaseMode = (tickInput & INPUT_PHASE) != 0;
+        if ((tickInput & INPUT_CLEAR) != 0) {
+            // Debug feature to instantly win the game by clearing all pellets.
+            pellets.clearAll();
+            bigPellets.clearAll();
+            pelletVersion++;
+            score = 0;
+            gameWon = true;
+            fireGameEnded(GameListener.WIN, 0);
+        }
+    }
+
+    // Main game update loop; advances the simulation by exactly one tick.
+    public void update() {
+        long start = profileStart();
+        long t = start;
+        tickCount++;
+        applyInput();
+        // Record where sprites start this tick so frames between ticks can interpolate.
+        pacman.savePosition();
+        ghostPool.savePositions();
+        updateCounter = (updateCounter + 1) % GHOST_MOVE_FREQUENCY; // Counter for ghost move timing.
+
+        updatePacmanPositionAndCollisions();
+        t = profileLap(EngineProfiler.PACMAN_COLLISIONS, t);
+        handlePelletConsumption();
+        t = profileLap(EngineProfiler.PELLETS, t);
+        handlePowerPelletEffects();
+        t = profileLap(EngineProfiler.POWER_PELLETS, t);
+        updatePacmanDirection();
+        t = profileLap(EngineProfiler.PACMAN_DIRECTION, t);
+        movePacmanAndWrapAround();
+        t = profileLap(EngineProfiler.PACMAN_MOVE, t);
+        updateGhosts();
+        t = profileLap(EngineProfiler.GHOSTS, t);
+        checkPacmanGhostCollisions();
+        t = profileLap(EngineProfiler.GHOST_COLLISIONS, t);
+        profileLap(EngineProfiler.TICK, start);
+    }
+
+    // Sets a gang to split ghost movement over when there are enough ghosts to pay for it, or null to move
+    // every ghost on the ticking thread. The game plays out exactly the same either way. The gang is not
+    // owned: several engines may share one, as long as they are not updated at the same time.
+    public void setGhostGang(WorkerGang gang) {
+        int threads = gang != null ? gang.getThreads() : 1;
+        if (ghostScratch.length < threads) {
+            GhostScratch[] scratch = Arrays.copyOf(ghostScratch, threads);
+            for (int i = ghostScratch.length; i < threads; i++) {
+                scratch[i] = new GhostScratch();
+            }
+            ghostScratch = scratch;
+        }
+        ghostGang = gang;
+    }
+
+    // Sets the profiler that receives phase timings, or null to turn timing off.
+    public void setProfiler(EngineProfiler profiler) {
+        this.profiler = profiler;
+    }
+
+    public EngineProfiler getProfiler() {
+        return profiler;
+    }
+
+    // Returns a timestamp to measure from, or 0 when profiling is off.
+    private long profileStart() {
+        return profiler != null ? System.nanoTime() : 0;
+    }
+
+    // Records the time since a timestamp under a measurement and returns the new timestamp.
+    private long profileLap(int measurement, long since) {
+        if (profiler == null) {
+            return 0;
+        }
+        long now = System.nanoTime();
+        profiler.record(measurement, now - since);
+        return now;
+    }
+
+    // Ensures Pacman is not stuck in a wall if not in phase mode.
+    private void updatePacmanPositionAndCollisions() {
+        if (!phaseMode && collides(pacman.getX(), pacman.getY())) {
+            snapPacmanToNearestFree(); // Move Pacman to a valid spot if stuck.
+        }
+    }
+
+    // Handles Pacman eating pellets and big pellets.
+    private void handlePelletConsumption() {
+        int pacmanRow = (pacman.getY() - yOffset) / tileSize;
+        int pacmanCol = (pacman.getX() - xOffset) / tileSize;
+
+        boolean validPosition = pacmanRow >= 0 && pacmanRow < rows &&
+                               pacmanCol >= 0 && pacmanCol < cols;
+
+        if (validPosition) {
+            // Check for regular pellet consumption.
+            if (pellets.get(pacmanRow, pacmanCol)) {
+                pellets.clear(pacmanRow, pacmanCol);
+                pelletVersion++;
+                score--;
+                fireEvent(GameListener.PELLET_EATEN, pacmanRow * cols + pacmanCol);
+
+                // Check for game win condition (all pellets eaten).
+                if (score <= 0) {
+                    gameWon = true;
+                    fireGameEnded(GameListener.WIN, 0);
+                }
+            }
+
+            // Check for big pellet consumption.
+            if (bigPellets.get(pacmanRow, pacmanCol)) {
+                bigPellets.clear(pacmanRow, pacmanCol);
+                pelletVersion++;
+                 // Activate power-up mode.
+                powerTimer = POWER_DURATION;
+                ghostPool.setAllEdible(true);
+                fireEvent(GameListener.POWER_UP, pacmanRow * cols + pacmanCol);
+            }
+        }
+    }
+
+    // Manages the power pellet effects, including timer and ghost flashing.
+    private void handlePowerPelletEffects() {
+        if (powerTimer > 0) {
+            powerTimer--;
+
+            // When power-up ends, revert ghosts to normal.
+            if (powerTimer == 0) {
+                ghostPool.setAllEdible(false);
+            // When power-up is about to end, make edible ghosts flash. The phase follows the timer, so it is
+            // the same in a replay or a restored snapshot.
+            } else if (powerTimer <= FLASH_START) {
+                ghostPool.flashEdible(((FLASH_START - powerTimer) / FLASH_INTERVAL_TICKS & 1) == 0);
+            }
+        }
+    }
+
+    // Updates Pacman's current direction based on preferred direction and wall collisions.
+    private void updatePacmanDirection() {
+        // If a preferred direction is set, try to switch to it.
+        if (prefDirX != 0 || prefDirY != 0) {
+            if (phaseMode || canMove(prefDirX, prefDirY)) {
+                currDirX = prefDirX;
+                currDirY = prefDirY;
+            }
+        }
+
+        // If not in phase mode and current direction leads to collision, stop Pacman.
+        if (!phaseMode && (currDirX != 0 || currDirY != 0)) {
+            if (!canMove(currDirX, currDirY)) {
+                currDirX = 0;
+                currDirY = 0;
+            }
+        }
+        pacman.setDirection(currDirX, currDirY);
+    }
+
+    // Moves Pacman and handles screen wrapping (tunnels) and wall collisions.
+    private void movePacmanAndWrapAround() {
+        pacman.move();
+        // Handle horizontal screen wrapping.
+        if (pacman.getX() < xOffset) {
+            pacman.setX(xOffset + (cols - 1) * tileSize);
+        } else if (pacman.getX() >= xOffset + (cols - 1) * tileSize) {
+            pacman.setX(xOffset);
+        }
+        if (!phaseMode) {
+            checkCollisions();
+        }
+    }
+
+    // Updates all ghosts, including cage logic and movement AI.
+    // Ghosts move independently of each other: each reads Pacman, the maze and the flow field, all fixed
+    // for the pass, and writes only its own slots of the pool, drawing random numbers from its own stream.
+    // So the pass can be split across threads and still play out exactly as on one. What they share is
+    // prepared beforehand (the flow field) or caught up afterwards (the pool's grid).
+    private void updateGhosts() {
+        // Ghosts move at a fraction of Pacman's update rate.
+        boolean moveGhosts = (updateCounter != 0); 
+        // Game time is derived from ticks so simulations behave the same at any speed.
+        long elapsed = tickCount * 1000 / LOGIC_FPS;
+
+        GhostPool pool = ghostPool;
+        int n = pool.size();
+        for (int g = 0; g < n; g++) {
+            handleGhostCageLogic(g, elapsed);
+        }
+        if (!moveGhosts) {
+            return;
+        }
+        ghostTickKey = random.nextLong();
+        WorkerGang gang = ghostGang;
+        if (gang != null && n >= MIN_PARALLEL_GHOSTS) {
+            // The field's distances are exact however far it has searched, so only threads need it prepared.
+            prepareFlowField();
+            gang.run(n, ghostJob);
+        } else {
+            moveGhosts(0, 0, n);
+        }
+        pool.reindex();
+    }
+
+    // Moves the uncaged ghosts in [from, to), using the scratch space of the given thread share.
+    private void moveGhosts(int share, int from, int to) {
+        GhostScratch scratch = ghostScratch[share];
+        for (int g = from; g < to; g++) {
+            if (!ghostPool.isInCage(g)) {
+                moveSingleGhost(g, scratch);
+            }
+        }
+    }
+
+    // Points the flow field at Pacman's tile and searches it out to every tile-aligned ghost, plus one step
+    // for the neighbors they score, so that during the ghost pass it is only read.
+    private void prepareFlowField() {
+        FlowField field = pacmanField;
+        field.setSource(topology.nodeAt(pacmanTileRow(pacman.getY()), pacmanTileCol(pacman.getX())));
+        if (field.getSource() < 0) {
+            return;
+        }
+        GhostPool pool = ghostPool;
+        int farthest = 0;
+        for (int g = 0, n = pool.size(); g < n; g++) {
+            int gx = pool.getX(g) - xOffset;
+            int gy = pool.getY(g) - yOffset;
+            if (pool.isInCage(g) || gx % tileSize != 0 || gy % tileSize != 0) {
+                continue;
+            }
+            int node = topology.nodeAt(gy / tileSize, gx / tileSize);
+            if (node >= 0) {
+                farthest = Math.max(farthest, field.distance(node));
+            }
+        }
+        field.reachDistance(farthest + 1);
+    }
+
+    // Tile row and column holding the centre of Pacman at a given position.
+    private int pacmanTileRow(int pacmanY) {
+        return (pacmanY + pacman.getHeight() / 2 - yOffset) / tileSize;
+    }
+
+    private int pacmanTileCol(int pacmanX) {
+        return (pacmanX + pacman.getWidth() / 2 - xOffset) / tileSize;
+    }
+
+    // One thread's working space for scoring ghost moves.
+    private static final class GhostScratch {
+        final int[] dirX = new int[4];
+        final int[] dirY = new int[4];
+        final int[] scores = new int[4];
+    }
+
+    // Manages a ghost's state within the starting cage, including release timing.
+    private void handleGhostCageLogic(int ghost, long elapsed) {
+        if (ghostPool.isInCage(ghost)) {
+            // Release ghost from cage if its delay has passed.
+            if (elapsed >= ghostPool.getReleaseDelay(ghost)) {
+                ghostPool.setInCage(ghost, false);
+                int spawnCol = (ghostPool.getSpawnX(ghost) - xOffset) / tileSize;
+                int exitRow = maze.getHouseExitRow();
+                ghostPool.setX(ghost, xOffset + spawnCol * tileSize);
+                ghostPool.setY(ghost, yOffset + exitRow * tileSize);
+                ghostPool.setDx(ghost, 0);
+                ghostPool.setDy(ghost, 0);
+            // Make ghost flash shortly before release.
+            }
+        }
+    }
+
+    // Determines and applies movement for a single ghost based on its AI.
+    void moveSingleGhost(int ghost) {
+        moveSingleGhost(ghost, ghostScratch[0]);
+    }
+
+    private void moveSingleGhost(int ghost, GhostScratch scratch) {
+        int hx = ghostPool.getX(ghost);
+        int hy = ghostPool.getY(ghost);
+        int speed = ghostPool.getSpeed(ghost);
+
+        // Only change direction when ghost is aligned with a tile center.
+        if ((hx - xOffset) % tileSize == 0 && (hy - yOffset) % tileSize == 0) {
+            int currentRow = (hy - yOffset) / tileSize;
+            int currentCol = (hx - xOffset) / tileSize;
+            ghostPool.addVisitedTile(ghost, currentRow, currentCol); // Record visited tile for AI.
+
+            int node = topology.nodeAt(currentRow, currentCol);
+            if (node >= 0 && !junctions.isJunction(node) && (ghostPool.getLastDx(ghost) != 0 || ghostPool.getLastDy(ghost) != 0)) {
+                // On a corridor there is only one way forward: follow it without any collision checks.
+                int dir = junctions.corridorDirection(node, directionIndex(ghostPool.getLastDx(ghost), ghostPool.getLastDy(ghost)));
+                int cdx = MazeTopology.DIR_X[dir];
+                int cdy = MazeTopology.DIR_Y[dir];
+                ghostPool.setDx(ghost, cdx * speed);
+                ghostPool.setDy(ghost, cdy * speed);
+                ghostPool.setLastDirection(ghost, cdx, cdy);
+                moveGhostAndWrapAround(ghost);
+                return;
+            }
+
+            int dx = 0, dy = 0;
+            int px = pacman.getX();
+            int py = pacman.getY();
+
+            // Right, Left, Down, Up (order might matter for tie-breaking). Refilled each time because
+            // the fallback below shuffles them in place.
+            int[] possibleDx = scratch.dirX;
+            int[] possibleDy = scratch.dirY;
+            int[] directionScores = scratch.scores;
+            System.arraycopy(MazeTopology.DIR_X, 0, possibleDx, 0, 4);
+            System.arraycopy(MazeTopology.DIR_Y, 0, possibleDy, 0, 4);
+
+            calculateGhostDirectionScores(ghost, px, py, currentRow, currentCol, speed, possibleDx, possibleDy, directionScores);
+
+            // Find the direction with the highest score.
+            int bestScore = -10000;
+            int bestIndex = -1;
+            for (int i = 0; i < 4; i++) {
+                if (directionScores[i] > bestScore) {
+                    bestScore = directionScores[i];
+                    bestIndex = i;
+                }
+            }
+
+            if (bestIndex >= 0) {
+                dx = possibleDx[bestIndex];
+                dy = possibleDy[bestIndex];
+            } else {
+                // Fallback: if no valid scored move, try random valid directions.
+                // Shuffle directions to pick a random valid one.
+                long key = GameRandom.subKey(ghostTickKey, ghost);
+                for (int i = possibleDx.length - 1; i > 0; i--) {
+                    int j = GameRandom.intAt(key, 4 + i, i + 1);
+                    int temp = possibleDx[i]; possibleDx[i] = possibleDx[j]; possibleDx[j] = temp;
+                    temp = possibleDy[i]; possibleDy[i] = possibleDy[j]; possibleDy[j] = temp;
+                }
+                for (int i = 0; i < possibleDx.length; i++) {
+                    if (canGhostMove(ghost, node, possibleDx[i], possibleDy[i], speed)) {
+                        dx = possibleDx[i];
+                        dy = possibleDy[i];
+                        break;
+                    }
+                }
+            }
+            ghostPool.setDx(ghost, dx * speed);
+            ghostPool.setDy(ghost, dy * speed);
+            ghostPool.setLastDirection(ghost, dx, dy); // Record this move for oscillation detection.
+        }
+        moveGhostAndWrapAround(ghost);
+    }
+
+    // Moves a ghost by its velocity and handles horizontal screen wrapping. The grid is caught up after the pass.
+    private void moveGhostAndWrapAround(int ghost) {
+        ghostPool.advance(ghost, xOffset, xOffset + (cols - 1) * tileSize);
+    }
+
+    // Determines if a tile-aligned ghost can move in a direction, using the junction graph's exits
+    // (which include the tunnels) when the ghost is on an open tile.
+    private boolean canGhostMove(int ghost, int node, int dirX, int dirY, int speed) {
+        if (node >= 0) {
+            return (junctions.exits(node) & (1 << directionIndex(dirX, dirY))) != 0;
+        }
+        int size = ghostPool.getGhostSize();
+        return (dirX != 0 || dirY != 0) && !collidesWithWalls(ghostPool.getX(ghost) + dirX * speed,
+                ghostPool.getY(ghost) + dirY * speed, size, size);
+    }
+
+    // Calculates scores for each possible movement direction for a ghost.
+    void calculateGhostDirectionScores(int ghost, int pacmanX, int pacmanY, int ghostCurrentRow, int ghostCurrentCol, int speed, int[] possibleDx, int[] possibleDy, int[] directionScores) {
+        int deltaX = pacmanX - ghostPool.getX(ghost);
+        int deltaY = pacmanY - ghostPool.getY(ghost);
+        boolean isOscillating = ghostPool.getLastMoveCounter(ghost) > 2;
+        long randomKey = GameRandom.subKey(ghostTickKey, ghost);
+
+        // Shortest-path distance from the ghost's tile to Pacman's, if both are open tiles. The field only
+        // restarts when Pacman has reached a new tile; during a ghost pass it is already pointed there.
+        int ghostNode = topology.nodeAt(ghostCurrentRow, ghostCurrentCol);
+        FlowField field = pacmanField;
+        field.setSource(topology.nodeAt(pacmanTileRow(pacmanY), pacmanTileCol(pacmanX)));
+        int currentDistance = ghostNode >= 0 ? field.distance(ghostNode) : MazeTopology.UNREACHABLE;
+
+        for (int i = 0; i < 4; i++) {
+            int testDx = possibleDx[i];
+            int testDy = possibleDy[i];
+
+            // Heavily penalize moves into walls.
+            if (!canGhostMove(ghost, ghostNode, testDx, testDy, speed)) {
+                directionScores[i] = -1000;
+                continue;
+            }
+
+            int pacmanDirectionScore = 0;
+            if (currentDistance != MazeTopology.UNREACHABLE) {
+                // Score by whether the move descends (chasing) or climbs (fleeing) the distance field to Pacman.
+                int nextNode = topology.neighbor(ghostNode, directionIndex(testDx, testDy));
+                boolean closer = nextNode >= 0 && field.distance(nextNode) < currentDistance;
+                if (ghostPool.isEdible(ghost)) {
+                    pacmanDirectionScore = closer ? -20 : 50;
+                } else {
+                    pacmanDirectionScore = closer ? 50 : -20;
+                }
+            } else if (ghostPool.isEdible(ghost)) {
+                // No path (e.g. Pacman phasing through a wall): fall back to the straight-line direction.
+                if (testDx != 0) pacmanDirectionScore += (deltaX * testDx < 0) ? 50 : -20; // Prefer moving opposite to Pacman's X.
+                if (testDy != 0) pacmanDirectionScore += (deltaY * testDy < 0) ? 50 : -20; // Prefer moving opposite to Pacman's Y.
+            } else { // Chasing logic.
+                if (testDx != 0) pacmanDirectionScore += (deltaX * testDx > 0) ? 50 : -20; // Prefer moving towards Pacman's X.
+                if (testDy != 0) pacmanDirectionScore += (deltaY * testDy > 0) ? 50 : -20; // Prefer moving towards Pacman's Y.
+            }
+
+            // Penalize reversing direction if oscillating to prevent getting stuck.
+            if (isOscillating && testDx == -ghostPool.getLastDx(ghost) && testDy == -ghostPool.getLastDy(ghost)) {
+                directionScores[i] = -500;
+                continue;
+            }
+
+            int continuityScore = 0;
+            // Reward continuing in the same direction if not oscillating.
+            if (!isOscillating && testDx == ghostPool.getLastDx(ghost) && testDy == ghostPool.getLastDy(ghost)) {
+                continuityScore = 10;
+            }
+
+            int destRow = ghostCurrentRow + testDy;
+            int destCol = ghostCurrentCol + testDx;
+            int historyPenalty = 0;
+            // Penalize recently or frequently visited tiles to encourage exploration.
+            if (ghostPool.countVisits(ghost, destRow, destCol) >= 2) {
+                historyPenalty = -100;
+            } else if (ghostPool.countVisits(ghost, destRow, destCol) > 0) {
+                historyPenalty = -50;
+            }
+            if (ghostPool.isEdible(ghost)) {
+                historyPenalty *= 1.5;
+            }
+
+            int randomScore = GameRandom.intAt(randomKey, i, 15);
+
+            directionScores[i] = pacmanDirectionScore + continuityScore + historyPenalty + randomScore;
+        }
+    }
+
+    // Maps a unit direction vector to its MazeTopology direction index.
+    private static int directionIndex(int dirX, int dirY) {
+        if (dirX > 0) return MazeTopology.RIGHT;
+        if (dirX < 0) return MazeTopology.LEFT;
+        return dirY > 0 ? MazeTopology.DOWN : MazeTopology.UP;
+    }
+
+    // Checks for and handles collisions between Pacman and ghosts.
+    void checkPacmanGhostCollisions() {
+        if (gameOver) return;
+
+        int buffer = Math.max(3, tileSize / 4); // Collision buffer size.
+        int pLeft = pacman.getX() + buffer;
+        int pRight = pacman.getX() + pacman.getWidth() - buffer;
+        int pTop = pacman.getY() + buffer;
+        int pBottom = pacman.getY() + pacman.getHeight() - buffer;
+        int pCenterX = pacman.getX() + pacman.getWidth() / 2;
+        int pCenterY = pacman.getY() + pacman.getHeight() / 2;
+
+        // Broad phase: overlapping boxes put the two top-left corners less than a tile apart,
+        // so only ghosts filed under Pacman's tile or a neighbouring one can collide.
+        GhostPool pool = ghostPool;
+        int[] candidates = collisionCandidates;
+        int candidateCount = pool.getGrid().query(pacman.getX(), pacman.getY(), candidates);
+        int size = pool.getGhostSize();
+        for (int i = 0; i < candidateCount; i++) {
+            int ghost = candidates[i];
+            if (pool.isInCage(ghost)) continue;
+
+            int gx = pool.getX(ghost);
+            int gy = pool.getY(ghost);
+            int ghostRow = (gy - yOffset) / tileSize;
+            int ghostCol = (gx - xOffset) / tileSize;
+
+            // Ensure ghost is truly out of the spawn cage area before checking collision.
+            boolean ghostOutOfCage = !isGhostSpawnArea(ghostRow, ghostCol);
+            if (!ghostOutOfCage) {
+                continue;
+            }
+
+            // More precise collision check using bounding boxes with a buffer.
+            int gLeft = gx + buffer;
+            int gRight = gx + size - buffer;
+            int gTop = gy + buffer;
+            int gBottom = gy + size - buffer;
+
+            boolean coreOverlap = (gRight > pLeft && gLeft < pRight && gBottom > pTop && gTop < pBottom);
+
+            if (coreOverlap) {
+                // Narrow phase: centres within 0.65 of the ghost's width, compared as squared integers
+                // (distance <= 13/20 * size  <=>  400 * distance^2 <= 169 * size^2).
+                long centerDx = gx + size / 2 - pCenterX;
+                long centerDy = gy + size / 2 - pCenterY;
+                boolean collision = 400 * (centerDx * centerDx + centerDy * centerDy) <= 169L * size * size;
+
+                if (collision) {
+                    if (!pool.isEdible(ghost)) {
+                        gameOver = true;
+                        fireGameEnded(GameListener.DEATH, ghost);
+                        return;
+                    } else {
+                        // Moving the ghost relinks it in the grid; the candidates were already copied out.
+                        pool.setInCage(ghost, true);
+                        pool.setEdible(ghost, false);
+                        pool.setEdibleFlashing(ghost, false);
+                        pool.setDx(ghost, 0);
+                        pool.setDy(ghost, 0);
+                        pool.setX(ghost, pool.getSpawnX(ghost));
+                        pool.setY(ghost, pool.getSpawnY(ghost));
+                        // score += GHOST_EAT_SCORE; // Potential future enhancement: score for eating ghosts.
+                        fireEvent(GameListener.GHOST_EATEN, ghost);
+                    }
+                }
+            }
+        }
+    }
+
+    public void movePacman(int dx, int dy) {
+        pacman.setDirection(dx, dy);
+    }
+
+    // Performs collision detection and response for Pacman against walls.
+    public void checkCollisions() {
+        int px = pacman.getX();
+        int py = pacman.getY();
+        int pw = pacman.getWidth();
+        int ph = pacman.getHeight();
+        int dx = pacman.getDx();
+        int dy = pacman.getDy();
+
+        boolean collision = collidesWithWalls(px, py, pw, ph);
+
+        if (collision) {
+            // If collision occurs, nudge Pacman back step-by-step until free.
+            int sdx = Integer.signum(dx);
+            int sdy = Integer.signum(dy);
+            int newX = px;
+            int newY = py;
+            
+            // Move Pacman back opposite to its last movement until no longer colliding.
+            while (collidesWithWalls(newX, newY, pw, ph)) {
+                if (sdx == 0 && sdy == 0) {
+                    break;
+                }
+                newX -= sdx;
+                newY -= sdy;
+            }
+            
+            pacman.setX(newX);
+            pacman.setY(newY);
+            pacman.setDx(0);
+            pacman.setDy(0);
+        }
+    }
+
+    public Pacman getPacman() {
+        return pacman;
+    }
+
+    public ArrayList<Ghost> getGhosts() {
+        return ghosts;
+    }
+
+    public GhostPool getGhostPool() {
+        return ghostPool;
+    }
+
+    public Maze getMaze() {
+        return maze;
+    }
+
+    // Returns the pellets left to eat; read-only.
+    public TileBitSet getPellets() {
+        return pellets;
+    }
+
+    // Returns the power pellets left to eat; read-only.
+    public TileBitSet getBigPellets() {
+        return bigPellets;
+    }
+
+    // Returns a counter that changes whenever any pellet is eaten or the pellets are reset.
+    public int getPelletVersion() {
+        return pelletVersion;
+    }
+
+    public int getLevel() {
+        return level;
+    }
+
+    // Returns the ticks left of the current power-up, or 0 when none is active.
+    public int getPowerTimer() {
+        return powerTimer;
+    }
+
+    public boolean isGameOver() {
+        return gameOver;
+    }
+
+    public boolean isGameWon() {
+        return gameWon;
+    }
+
+    // Returns true once the game has been either won or lost.
+    public boolean isFinished() {
+        return gameOver || gameWon;
+    }
+
+    public long getTickCount() {
+        return tickCount;
+    }
+
+    // Returns the camera that draw() scrolls to follow Pacman.
+    public Camera getCamera() {
+        return camera;
+    }
+
+    public int getTileSize() {
+        return tileSize;
+    }
+
+    public int getXOffset() {
+        return xOffset;
+    }
+
+    public int getYOffset() {
+        return yOffset;
+    }
+
+    // Steers Pacman in a direction (dx and dy each -1, 0 or 1) from the keyboard thread. Like the other key
+    // methods, this only queues the input; update() takes it up at the start of a coming tick.
+    public void steer(int dx, int dy) {
+        queueKeyInput(encodeInput(dx, dy, keyInput & INPUT_PHASE));
+    }
+
+    // Debug feature: phase mode (no-clip) lasts while the key is held.
+    public void setPhaseKeyHeld(boolean held) {
+        queueKeyInput(held ? keyInput | INPUT_PHASE : keyInput & ~INPUT_PHASE);
+    }
+
+    // Debug feature: instantly wins the game by clearing all pellets.
+    public void clearPelletsKey() {
+        queueKeyInput(keyInput | INPUT_CLEAR);
+    }
+
+    // Drops key changes queued for the game that was in progress and makes the keyboard's copy of the input
+    // the one now in force, so the next key builds on it. Only call between ticks.
+    private void resyncKeyInput() {
+        while (keyInputs.poll() != SpscQueue.EMPTY) {
+            // Stale.
+        }
+        keyInput = input;
+    }
+
+    // Queues a change of input from the keyboard thread. Auto-repeat of the key already in force queues
+    // nothing; if the game has fallen so far behind that the queue is full, the key is dropped rather than
+    // waited for, and the next press tries again.
+    private void queueKeyInput(int code) {
+        if (code != keyInput && keyInputs.offer(code)) {
+            keyInput = code & ~INPUT_CLEAR;
+        }
+    }
+
+    // Main drawing method for the game, drawing sprites at their latest tick positions.
+    public void draw(Graphics g) {
+        draw(g, 1.0);
+    }
+
+    // Draws the game with sprites interpolated a fraction alpha of the way from the previous tick to the current one.
+    public void draw(Graphics g, double alpha) {
+        long start = profileStart();
+        // Walls and regular pellets come from a cached layer that only changes where a pellet was eaten.
+        // The renderer is created lazily to keep headless engines AWT-free.
+        if (renderer == null) {
+            renderer = new MazeRenderer(maze);
+        }
+        // Scroll so Pacman stays in view; everything below is drawn in world coordinates and culled to the view.
+        int pacmanX = pacman.getRenderX(alpha);
+        int pacmanY = pacman.getRenderY(alpha);
+        camera.follow(pacmanX + pacman.getWidth() / 2, pacmanY + pacman.getHeight() / 2,
+                xOffset, yOffset, cols * tileSize, rows * tileSize);
+        int cameraX = camera.getX();
+        int cameraY = camera.getY();
+        g.translate(-cameraX, -cameraY);
+
+        renderer.drawBoard(g, camera, pellets, pelletVersion, xOffset, yOffset, tileSize);
+        
+        // Draw big pellets.
+        renderer.drawPowerPellets(g, camera, bigPellets, xOffset, yOffset, tileSize);
+        
+        // Sprites are stamped from cached discs rather than filled ovals, which allocate when antialiased.
+        for (int i = 0, n = ghosts.size(); i < n; i++) {
+            Ghost ghost = ghosts.get(i);
+            int ghostX = ghost.getRenderX(alpha);
+            int ghostY = ghost.getRenderY(alpha);
+            if (camera.isVisible(ghostX, ghostY, ghost.getWidth(), ghost.getHeight())) {
+                renderer.drawSprite(g, ghost.getDrawColor(), ghostX, ghostY, ghost.getWidth());
+            }
+        }
+        
+        renderer.drawSprite(g, Pacman.COLOR, pacmanX, pacmanY, pacman.getWidth());
+        g.translate(cameraX, cameraY);
+        profileLap(EngineProfiler.DRAW, start);
+    }
+
+    public int getScore() {
+        return score;
+    }
+
+    // Returns the elapsed game time as mm:ss. Called every frame, so the string is only rebuilt
+    // when the displayed second changes.
+    public String getTimeString() {
+        long elapsedTime = System.currentTimeMillis() - startTime;
+        long totalSeconds = elapsedTime / 1000;
+        if (totalSeconds != timeStringSeconds || timeString == null) {
+            long minutes = totalSeconds / 60;
+            long seconds = totalSeconds % 60;
+            timeString = String.format("%02d:%02d", minutes, seconds);
+            timeStringSeconds = totalSeconds;
+        }
+        return timeString;
+    }
+    
+    // Returns the HUD pellet count, rebuilt only when the score changes.
+    public String getScoreString() {
+        if (scoreString == null || scoreStringValue != score) {
+            scoreString = "Pellets: " + score;
+            scoreStringValue = score;
+        }
+        return scoreString;
+    }
+
+    public void setStartTime(long startTime) {
+        this.startTime = startTime;
+    }
+
+    public void setScore(int score) {
+        this.score = score;
+    }
+}
\ No newline at end of file
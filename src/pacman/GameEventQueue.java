@@ -0,0 +1,65 @@
+package pacman;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// Hands one game's events from the thread updating it to another thread, typically the EDT, without either
+// ever waiting for the other. Set as the engine's listener, it queues each event; when the queue goes from
+// drained to pending it runs a wake-up hook, which for Swing schedules a drain() with invokeLater. drain()
+// then delivers everything queued to the other thread's own listener.
+//
+// If the other thread falls a whole queue behind, pellet, power-up and ghost events are dropped and
+// counted; the last few slots are kept for the events that end a game, which always get through.
+public final class GameEventQueue implements GameListener {
+    private static final int RESERVED = 4; // Slots only game-ending events may take.
+
+    private final GameEngine engine;
+    private final SpscQueue queue;
+    private final Runnable wakeUp;
+    private final AtomicBoolean awake = new AtomicBoolean(); // From a wake-up until the drain answering it.
+    private volatile long dropped;
+
+    // Constructs a queue of up to capacity events from an engine; wakeUp, which may be null, is run on the
+    // updating thread when events arrive that no drain has been asked for yet. Sets itself as the listener.
+    public GameEventQueue(GameEngine engine, int capacity, Runnable wakeUp) {
+        this.engine = engine;
+        this.queue = new SpscQueue(Math.max(capacity, 2 * RESERVED));
+        this.wakeUp = wakeUp;
+        engine.setGameListener(this);
+    }
+
+    // Queues an event; called by the engine on the updating thread. Allocates nothing but what wakeUp does.
+    @Override
+    public void gameEvent(GameEngine source, int type, int arg) {
+        boolean ends = type == DEATH || type == WIN;
+        if (!queue.offer((long) type << 32 | (arg & 0xFFFFFFFFL), ends ? 0 : RESERVED)) {
+            dropped++; // Only this thread writes the count.
+            return;
+        }
+        if (!awake.get() && awake.compareAndSet(false, true) && wakeUp != null) {
+            wakeUp.run();
+        }
+    }
+
+    // Delivers every queued event to a listener, in order, on the calling thread, and returns how many
+    // there were. Call from one thread only.
+    public int drain(GameListener target) {
+        // Cleared first, so that an event queued after the last poll below wakes the other thread again.
+        awake.set(false);
+        int count = 0;
+        long event;
+        while ((event = queue.poll()) != SpscQueue.EMPTY) {
+            target.gameEvent(engine, (int) (event >>> 32), (int) event);
+            count++;
+        }
+        return count;
+    }
+
+    public GameEngine getEngine() {
+        return engine;
+    }
+
+    // Returns the number of events dropped because the queue was full.
+    public long getDropped() {
+        return dropped;
+    }
+}
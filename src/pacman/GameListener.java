@@ -0,0 +1,16 @@
+package pacman;
+
+// Receives notifications from a running GameEngine without tying the engine to any UI toolkit.
+// Called on the thread updating the engine, in the middle of a tick: implementations must be quick and must
+// not touch the engine. GameEventQueue hands the events to another thread.
+public interface GameListener {
+    // Event types, each with its argument.
+    int PELLET_EATEN = 0; // The pellet's tile index.
+    int POWER_UP = 1;     // The power pellet's tile index.
+    int GHOST_EATEN = 2;  // The ghost's index.
+    int DEATH = 3;        // The index of the ghost that caught Pacman. Ends the game.
+    int WIN = 4;          // 0. Ends the game: every pellet was eaten.
+
+    // Called for each event, in the order they happen.
+    void gameEvent(GameEngine engine, int type, int arg);
+}
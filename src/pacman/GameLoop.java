@@ -0,0 +1,116 @@
+package pacman;
+
+import java.util.concurrent.locks.LockSupport;
+
+// Runs game logic at a fixed timestep on a dedicated thread and renders between ticks.
+// Logic never waits on the EDT, and late ticks are caught up instead of being coalesced away. When the game
+// is won or lost the loop draws the final frame and finishes on its own, so nobody has to wait for it then.
+public class GameLoop implements Runnable {
+    private static final long TICK_NANOS = 1_000_000_000L / GameEngine.LOGIC_FPS;
+    private static final long FRAME_NANOS = 1_000_000_000L / 60;
+    // Upper bound on catch-up ticks per frame, so a long stall (e.g. a suspended laptop)
+    // cannot snowball into a loop that never renders again.
+    private static final int MAX_CATCH_UP_TICKS = 5;
+
+    private final GameEngine engine;
+    private final GameCanvas canvas;
+    private final Runnable onGameEnd;
+    private Checkpoint checkpoint; // Optional; saved after every tick.
+    private volatile boolean running;
+    private volatile boolean finished; // Set once run() no longer touches the engine, canvas or checkpoint.
+    private Thread thread;
+
+    // Constructs a loop that advances the engine and renders it onto the canvas. onGameEnd, if not null, is
+    // run on the loop thread once the game is over and the loop has finished with it; it must not block.
+    public GameLoop(GameEngine engine, GameCanvas canvas, Runnable onGameEnd) {
+        this.engine = engine;
+        this.canvas = canvas;
+        this.onGameEnd = onGameEnd;
+    }
+
+    // Sets a checkpoint to save the game to after every tick, or null for none. Call before start().
+    public void setCheckpoint(Checkpoint checkpoint) {
+        this.checkpoint = checkpoint;
+    }
+
+    // Starts the loop thread.
+    public void start() {
+        running = true;
+        thread = new Thread(this, "game-loop");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    // Stops the loop after the current frame. From any other thread, waits for the loop to finish, so once
+    // this returns the engine is no longer updated or saved and the canvas is free for another loop; a loop
+    // that has already finished, say because its game ended, is not waited for at all. From the loop thread
+    // itself, or if the wait is interrupted, only asks it to finish; the interrupt is kept for the caller.
+    public void stop() {
+        running = false;
+        Thread loopThread = thread;
+        if (loopThread == null || finished) {
+            return;
+        }
+        LockSupport.unpark(loopThread);
+        if (loopThread == Thread.currentThread()) {
+            return;
+        }
+        try {
+            loopThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void run() {
+        long previous = System.nanoTime();
+        long lag = 0;
+        long nextFrame = previous;
+        while (running) {
+            long now = System.nanoTime();
+            lag += now - previous;
+            previous = now;
+
+            // Run as many fixed-length ticks as the elapsed time calls for.
+            int ticks = 0;
+            while (lag >= TICK_NANOS && ticks < MAX_CATCH_UP_TICKS) {
+                engine.update();
+                if (checkpoint != null) {
+                    checkpoint.save(engine);
+                }
+                lag -= TICK_NANOS;
+                ticks++;
+            }
+            if (lag >= TICK_NANOS) {
+                lag %= TICK_NANOS; // Too far behind to catch up; resume from the current time.
+            }
+
+            // Render the state part-way between the last tick and the next one.
+            long renderStart = System.nanoTime();
+            canvas.render(engine, (double) lag / TICK_NANOS);
+
+            EngineProfiler profiler = engine.getProfiler();
+            if (profiler != null) {
+                long rendered = System.nanoTime();
+                profiler.record(EngineProfiler.FRAME, rendered - renderStart);
+                profiler.rollWindow(rendered);
+            }
+            if (engine.isFinished()) {
+                break; // The final frame is on screen.
+            }
+
+            nextFrame += FRAME_NANOS;
+            long sleep = nextFrame - System.nanoTime();
+            if (sleep > 0) {
+                LockSupport.parkNanos(this, sleep);
+            } else {
+                nextFrame = System.nanoTime(); // Missed the frame; don't try to make it up.
+            }
+        }
+        finished = true;
+        if (engine.isFinished() && onGameEnd != null) {
+            onGameEnd.run();
+        }
+    }
+}
@@ -0,0 +1,279 @@
+package pacman;
+
+import java.awt.*;
+import java.awt.event.KeyAdapter;
+import java.awt.event.KeyEvent;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import javax.swing.*;
+
+public class GamePanel extends JPanel {
+    // Mazes that would be drawn with smaller tiles than this scroll instead, at SCROLLING_TILE_SIZE.
+    private static final int MIN_TILE_SIZE = 16;
+    private static final int SCROLLING_TILE_SIZE = 32;
+    // Directory finished games are saved to as replay logs; they are not kept if the property is unset.
+    private static final String REPLAY_DIRECTORY_PROPERTY = "pacman.replays";
+    // File the game in progress is saved to every tick and resumed from after a restart; off if unset.
+    private static final String CHECKPOINT_PROPERTY = "pacman.checkpoint";
+    private static final int EVENT_CAPACITY = 1024;
+
+    private final Maze maze;
+    private GameEngine engine;
+    private StartPanel startPanel;
+    private GameCanvas canvas;
+    private GameLoop loop;
+    private GameEventQueue events; // The current game's events, drained on the EDT.
+    private final Runnable eventDrain = this::drainEvents;
+    private final GameListener eventHandler = this::handleGameEvent;
+    private final KeyAdapter controls = new Controls();
+    private Checkpoint checkpoint;
+    private boolean gameStarted;
+
+    // Constructs the GamePanel for the standard maze.
+    public GamePanel() {
+        this(Maze.standard());
+    }
+
+    // Constructs the GamePanel, setting up UI and initializing the game engine.
+    public GamePanel(Maze maze) {
+        this.maze = maze;
+        setLayout(new BorderLayout());
+        int h = 1000;
+        int w = 1690;
+
+        engine = createEngine(w, h);
+        setPreferredSize(new Dimension(w, h));
+        setBackground(Color.BLACK);
+        setFocusable(true);
+        requestFocusInWindow();
+
+        setDoubleBuffered(true);
+
+        startPanel = new StartPanel();
+        startPanel.addPlayListener(e -> startGame());
+        add(startPanel, BorderLayout.CENTER);
+
+        // The game is drawn by the loop thread onto this canvas rather than by Swing repaints.
+        canvas = new GameCanvas();
+    }
+
+    // Initializes and starts a new game session, or resumes the one in the checkpoint file.
+    public void startGame() {
+        GameEngine game = resumeCheckpoint();
+        long elapsed = 0;
+        if (game != null) {
+            game.getCamera().setViewSize(getWidth(), getHeight());
+            elapsed = game.getTickCount() * 1000 / GameEngine.LOGIC_FPS;
+        } else {
+            game = createEngine(getWidth(), getHeight());
+            game.startRecording(); // A few bytes per key press; saved only if a replay directory is set.
+        }
+        run(game, true);
+        engine.setStartTime(System.currentTimeMillis() - elapsed);
+        String checkpointFile = System.getProperty(CHECKPOINT_PROPERTY);
+        if (checkpointFile != null) {
+            try {
+                checkpoint = Checkpoint.open(Paths.get(checkpointFile), engine.getSnapshotSize());
+                loop.setCheckpoint(checkpoint);
+            } catch (IOException ex) {
+                System.err.println("Could not open checkpoint " + checkpointFile + ": " + ex);
+            }
+        }
+        loop.start();
+    }
+
+    // Returns the game saved in the checkpoint file, or null if there is none to resume.
+    private GameEngine resumeCheckpoint() {
+        String checkpointFile = System.getProperty(CHECKPOINT_PROPERTY);
+        if (checkpointFile == null) {
+            return null;
+        }
+        try {
+            return Checkpoint.load(Paths.get(checkpointFile), maze);
+        } catch (IOException ex) {
+            System.err.println("Could not read checkpoint " + checkpointFile + ": " + ex);
+            return null;
+        }
+    }
+
+    // Plays a recorded game back on this panel's maze; the keyboard is ignored until it ends.
+    public void playReplay(ReplayLog log) {
+        GameEngine game = log.createEngine(maze);
+        game.getCamera().setViewSize(getWidth(), getHeight());
+        run(game, false);
+        loop.start();
+    }
+
+    // Switches to the canvas and sets up a game loop for an engine; the caller starts the loop.
+    private void run(GameEngine game, boolean interactive) {
+        if (loop != null) {
+            loop.stop(); // Only one loop may draw on the canvas.
+        }
+        remove(startPanel);
+        canvas.removeKeyListener(controls);
+        engine = game;
+        // The loop thread only queues the game's events; the EDT drains them when it gets to it.
+        events = new GameEventQueue(engine, EVENT_CAPACITY, () -> SwingUtilities.invokeLater(eventDrain));
+        engine.setStartTime(System.currentTimeMillis());
+        engine.setProfiler(new EngineProfiler()); // Cheap at interactive rates; shown with F3.
+        if (interactive) {
+            canvas.addKeyListener(controls);
+        }
+        add(canvas, BorderLayout.CENTER);
+        revalidate();
+        gameStarted = true;
+
+        GameEngine ended = engine;
+        loop = new GameLoop(engine, canvas, () -> SwingUtilities.invokeLater(() -> gameEnded(ended)));
+        canvas.requestFocusInWindow();
+    }
+
+    // Delivers the current game's queued events on the EDT.
+    private void drainEvents() {
+        if (events != null) {
+            events.drain(eventHandler);
+        }
+    }
+
+    // Handles one game event on the EDT. This is where sounds or effects would go; the panel itself changes
+    // only once the loop has finished with a game that has ended (see gameEnded).
+    private void handleGameEvent(GameEngine game, int type, int arg) {
+    }
+
+    // Called on the EDT after a game's loop drew its final frame and finished on its own, so returning to
+    // the start screen does not wait on the loop thread.
+    private void gameEnded(GameEngine game) {
+        if (game != engine) {
+            return; // Another game was started since.
+        }
+        saveReplay(game);
+        returnToStartScreen();
+    }
+
+    // Writes a finished game's replay log to the replay directory, if recording is on.
+    private void saveReplay(GameEngine game) {
+        ReplayLog log = game.getRecording();
+        String directory = System.getProperty(REPLAY_DIRECTORY_PROPERTY);
+        if (log == null || !log.isFinished() || directory == null) {
+            return;
+        }
+        Path file = Paths.get(directory, "pacman-" + System.currentTimeMillis() + ".replay");
+        try {
+            Files.createDirectories(file.getParent());
+            try (OutputStream out = Files.newOutputStream(file)) {
+                log.write(out);
+            }
+        } catch (IOException ex) {
+            System.err.println("Could not save replay " + file + ": " + ex);
+        }
+    }
+
+    // Builds an engine for a panel of the given size: mazes that fit at a readable tile size are shown whole,
+    // larger ones scroll with Pacman.
+    private GameEngine createEngine(int width, int height) {
+        long seed = GameRandom.randomSeed();
+        if (Math.min(width / maze.getWidth(), height / maze.getHeight()) >= MIN_TILE_SIZE) {
+            return new GameEngine(maze, width, height, seed, GameEngine.DEFAULT_GHOST_COUNT);
+        }
+        GameEngine scrolling = new GameEngine(maze, SCROLLING_TILE_SIZE, seed, GameEngine.DEFAULT_GHOST_COUNT);
+        scrolling.getCamera().setViewSize(width, height);
+        return scrolling;
+    }
+
+    // Returns to the start screen, typically after a game ends or is quit.
+    public void returnToStartScreen() {
+        // Prevent returning to start screen if game is active and score is positive.
+        if (engine != null) {
+            if (!engine.isGameOver() && !engine.isGameWon() && engine.getScore() > 0) {
+                return;
+            }
+        }
+
+        // Reset panel to show start screen.
+        if (loop != null) {
+            loop.stop();
+            loop = null;
+        }
+        if (checkpoint != null) {
+            // The loop has finished, so nothing saves to the checkpoint any more.
+            try {
+                checkpoint.close();
+            } catch (IOException ex) {
+                System.err.println("Could not close checkpoint: " + ex);
+            }
+            checkpoint = null;
+        }
+        removeAll();
+        add(startPanel, BorderLayout.CENTER);
+        gameStarted = false;
+        revalidate();
+        repaint();
+    }
+
+    public boolean isGameStarted() {
+        return gameStarted;
+    }
+
+    // Turns key events on the EDT into input for the current game.
+    private final class Controls extends KeyAdapter {
+        @Override
+        public void keyPressed(KeyEvent e) {
+            // 'F' key: Debug feature to instantly win the game by clearing all pellets.
+            if (e.getKeyCode() == KeyEvent.VK_F) {
+                engine.clearPelletsKey();
+                return;
+            }
+            // Space key: Debug feature to toggle phase mode (no-clip).
+            if (e.getKeyCode() == KeyEvent.VK_SPACE) {
+                engine.setPhaseKeyHeld(true);
+                return;
+            }
+            // Arrow keys or WASD for Pacman movement.
+            if (e.getKeyCode() == KeyEvent.VK_LEFT || e.getKeyCode() == KeyEvent.VK_A) {
+                engine.steer(-1, 0);
+            } else if (e.getKeyCode() == KeyEvent.VK_RIGHT || e.getKeyCode() == KeyEvent.VK_D) {
+                engine.steer(1, 0);
+            } else if (e.getKeyCode() == KeyEvent.VK_UP || e.getKeyCode() == KeyEvent.VK_W) {
+                engine.steer(0, -1);
+            } else if (e.getKeyCode() == KeyEvent.VK_DOWN || e.getKeyCode() == KeyEvent.VK_S) {
+                engine.steer(0, 1);
+            }
+        }
+
+        @Override
+        public void keyReleased(KeyEvent e) {
+            if (e.getKeyCode() == KeyEvent.VK_SPACE) {
+                engine.setPhaseKeyHeld(false); // Deactivate phase mode on space release.
+            }
+        }
+    }
+
+    // Usage: GamePanel [maze file] [replay file]
+    // Set -Dpacman.replays=<directory> to save a replay of every finished game.
+    public static void main(String[] args) throws IOException {
+        Maze maze = args.length > 0 && !args[0].isEmpty() ? Maze.load(Paths.get(args[0])) : Maze.standard();
+        ReplayLog replay = null;
+        if (args.length > 1) {
+            try (InputStream in = Files.newInputStream(Paths.get(args[1]))) {
+                replay = ReplayLog.read(in);
+            }
+        }
+        GamePanel panel = new GamePanel(maze);
+        JFrame frame = new JFrame("");
+
+        frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+        frame.setResizable(false);
+        frame.add(panel);
+        frame.pack();
+        frame.setVisible(true);
+        panel.requestFocusInWindow();
+        if (replay != null) {
+            ReplayLog log = replay;
+            SwingUtilities.invokeLater(() -> panel.playReplay(log));
+        }
+    }
+}
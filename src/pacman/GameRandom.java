@@ -0,0 +1,70 @@
+package pacman;
+
+// Fast, seedable pseudo-random generator (SplitMix64) owned by a single engine.
+// Not thread-safe by design: each engine has its own instance, so there is no shared state to contend on.
+// Work split across threads draws from keyed streams instead (see longAt), with keys taken from an instance.
+public final class GameRandom {
+    private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+    private long state;
+
+    // Constructs a generator whose sequence is fully determined by the given seed.
+    public GameRandom(long seed) {
+        this.state = seed;
+    }
+
+    // Returns a seed suitable for an unseeded, non-reproducible game.
+    public static long randomSeed() {
+        return mix64(System.nanoTime() ^ Thread.currentThread().getId() * GOLDEN_GAMMA);
+    }
+
+    // Returns the next 64 pseudo-random bits.
+    public long nextLong() {
+        state += GOLDEN_GAMMA;
+        return mix64(state);
+    }
+
+    // Returns a pseudo-random int in [0, bound).
+    public int nextInt(int bound) {
+        // Multiply-shift maps the top 32 bits onto the range without division.
+        return (int) (((nextLong() >>> 32) * bound) >>> 32);
+    }
+
+    // Returns a pseudo-random double in [0, 1).
+    public double nextDouble() {
+        return (nextLong() >>> 11) * 0x1.0p-53;
+    }
+
+    // Returns the generator's whole state; a generator given it with setState() continues the same sequence.
+    public long getState() {
+        return state;
+    }
+
+    public void setState(long state) {
+        this.state = state;
+    }
+
+    // Counter-based draws: the value at position counter of the stream named by key, computed directly
+    // instead of in sequence. Threads drawing from their own keys get the same values in any order, which
+    // keeps work split across threads deterministic.
+    public static long longAt(long key, int counter) {
+        return mix64(key + (counter + 1L) * GOLDEN_GAMMA);
+    }
+
+    // Returns a pseudo-random int in [0, bound) at a position of a keyed stream.
+    public static int intAt(long key, int counter, int bound) {
+        return (int) (((longAt(key, counter) >>> 32) * bound) >>> 32);
+    }
+
+    // Derives the key of an independent stream numbered index from a parent key.
+    public static long subKey(long key, int index) {
+        return mix64(key ^ (index + 1L) * 0xd1b54a32d192ed03L);
+    }
+
+    // Stafford variant 13 finalizer, as used by SplittableRandom.
+    private static long mix64(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,351 @@
+package pacman;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.LockSupport;
+
+// An authoritative server hosting many independent games in one JVM. Each TCP connection is a session with
+// its own GameEngine: the player sends directions as single bytes (0 for none, else 1 + a MazeTopology
+// direction, as in GameEngine.encodeInput) and gets a frame of the game's state back every tick (see
+// StateEncoder). A finished game restarts at once with a new seed.
+//
+// Sessions have no threads of their own. One I/O thread serves every connection through a selector, and
+// one tick thread runs all the games at GameEngine.LOGIC_FPS, splitting each tick over a WorkerGang; the
+// thread that steps a game also encodes its frame and sends it. Sockets are non-blocking, so a client that
+// reads slowly just skips frames while its last one is still going out, and can never hold up a tick.
+// The tick thread keeps tick latency (from when a tick was due until its last frame was sent) and the time
+// spent stepping, and reports percentiles and sessions per core every few seconds.
+public final class GameServer implements AutoCloseable {
+    private static final long TICK_NANOS = 1_000_000_000L / GameEngine.LOGIC_FPS;
+    private static final long REPORT_NANOS = 5_000_000_000L;
+    private static final int TILE_SIZE = 16;
+
+    private final Maze maze;
+    private final int ghostCount;
+    private final GameRandom seeds;
+    private final WorkerGang gang;
+    private final WorkerGang.Job tickJob = this::tickRange;
+    private final ConcurrentLinkedQueue<Session> joins = new ConcurrentLinkedQueue<>();
+    private Session[] sessions = new Session[64]; // Owned by the tick thread.
+    private int sessionCount;
+    private volatile int liveSessions;
+
+    private ServerSocketChannel server;
+    private Selector selector;
+    private Thread ioThread;
+    private Thread tickThread;
+    private volatile boolean running;
+    private PrintStream report;
+
+    // Tick thread statistics for the current report window.
+    private final LatencyHistogram tickLatency = new LatencyHistogram();
+    private final LatencyHistogram tickWork = new LatencyHistogram();
+    private long sessionTicks;
+    private final long[] skippedFrames; // Per share, so the tick's threads never write the same counter.
+
+    // One connected player and their game.
+    private static final class Session {
+        final SocketChannel channel;
+        final GameEngine engine;
+        final GameRandom seeds;
+        final StateEncoder encoder;
+        final ByteBuffer out; // The frame going out; empty (position == limit) once sent.
+        volatile int input;   // The latest direction code received.
+        volatile boolean closed;
+
+        Session(SocketChannel channel, GameEngine engine, long seed) {
+            this.channel = channel;
+            this.engine = engine;
+            this.seeds = new GameRandom(seed);
+            this.encoder = new StateEncoder(engine);
+            this.out = ByteBuffer.allocateDirect(StateEncoder.maxFrameSize(engine)).flip();
+        }
+    }
+
+    // Constructs a server whose games are played on the given maze with the given number of ghosts,
+    // stepped by a gang of threads. Nothing listens until start().
+    public GameServer(Maze maze, int ghostCount, int threads, long seed) {
+        this.maze = maze;
+        this.ghostCount = ghostCount;
+        this.seeds = new GameRandom(seed);
+        this.gang = new WorkerGang(threads, "game-server-tick");
+        this.skippedFrames = new long[threads];
+    }
+
+    // Sets where the periodic reports go, or null for none. Call before start().
+    public void setReport(PrintStream report) {
+        this.report = report;
+    }
+
+    // Starts listening on an address (port 0 picks a free one) and starts the I/O and tick threads.
+    public void start(InetSocketAddress address) throws IOException {
+        server = ServerSocketChannel.open();
+        server.bind(address);
+        server.configureBlocking(false);
+        selector = Selector.open();
+        server.register(selector, SelectionKey.OP_ACCEPT);
+        running = true;
+        ioThread = new Thread(this::serveConnections, "game-server-io");
+        tickThread = new Thread(this::runTicks, "game-server-tick");
+        ioThread.setDaemon(true);
+        tickThread.setDaemon(true);
+        ioThread.start();
+        tickThread.start();
+    }
+
+    // Returns the port the server is listening on.
+    public int getPort() throws IOException {
+        return ((InetSocketAddress) server.getLocalAddress()).getPort();
+    }
+
+    // Returns the number of sessions being played, as of the last tick.
+    public int getSessionCount() {
+        return liveSessions;
+    }
+
+    // The I/O thread: accepts connections and reads players' input.
+    private void serveConnections() {
+        ByteBuffer in = ByteBuffer.allocateDirect(256);
+        try {
+            while (running) {
+                selector.select();
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.isAcceptable()) {
+                        accept();
+                    } else if (key.isReadable()) {
+                        read(key, in);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            if (running) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel;
+        while ((channel = server.accept()) != null) {
+            channel.configureBlocking(false);
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            long seed = seeds.nextLong();
+            Session session = new Session(channel, new GameEngine(maze, TILE_SIZE, seed, ghostCount), seed);
+            channel.register(selector, SelectionKey.OP_READ, session);
+            joins.add(session);
+        }
+    }
+
+    // Reads whatever input a player has sent; only the latest valid direction counts.
+    private void read(SelectionKey key, ByteBuffer in) {
+        Session session = (Session) key.attachment();
+        try {
+            int n;
+            while ((n = session.channel.read(in.clear())) > 0) {
+                for (int i = n - 1; i >= 0; i--) {
+                    int code = in.get(i);
+                    if (code >= 0 && code <= 4) {
+                        session.input = code;
+                        break;
+                    }
+                }
+            }
+            if (n < 0) {
+                close(session);
+            }
+        } catch (IOException e) {
+            close(session);
+        }
+    }
+
+    private static void close(Session session) {
+        session.closed = true;
+        try {
+            session.channel.close();
+        } catch (IOException e) {
+            // Nothing more to do for a connection that is going away.
+        }
+    }
+
+    // The tick thread: adopts new sessions, drops closed ones, and steps the rest once per tick.
+    private void runTicks() {
+        long due = System.nanoTime();
+        long windowStart = due;
+        while (running) {
+            adoptSessions();
+            long start = System.nanoTime();
+            gang.run(sessionCount, tickJob);
+            long end = System.nanoTime();
+            tickLatency.record(end - due);
+            tickWork.record(end - start);
+            sessionTicks += sessionCount;
+            if (end - windowStart >= REPORT_NANOS) {
+                report(end - windowStart);
+                windowStart = end;
+            }
+
+            due += TICK_NANOS;
+            long sleep = due - System.nanoTime();
+            if (sleep > 0) {
+                LockSupport.parkNanos(this, sleep);
+            } else if (-sleep > TICK_NANOS) {
+                due = System.nanoTime(); // Too far behind to catch up; start timing from now.
+            }
+        }
+    }
+
+    private void adoptSessions() {
+        int live = 0;
+        for (int i = 0; i < sessionCount; i++) {
+            if (!sessions[i].closed) {
+                sessions[live++] = sessions[i];
+            }
+        }
+        Arrays.fill(sessions, live, sessionCount, null);
+        sessionCount = live;
+        Session session;
+        while ((session = joins.poll()) != null) {
+            if (sessionCount == sessions.length) {
+                sessions = Arrays.copyOf(sessions, sessions.length * 2);
+            }
+            sessions[sessionCount++] = session;
+        }
+        liveSessions = sessionCount;
+    }
+
+    // Steps, encodes and sends the sessions [from, to) for one tick.
+    private void tickRange(int share, int from, int to) {
+        for (int i = from; i < to; i++) {
+            Session session = sessions[i];
+            if (session.closed) {
+                continue;
+            }
+            GameEngine engine = session.engine;
+            int direction = session.input - 1;
+            engine.step(direction >= 0 ? MazeTopology.DIR_X[direction] : 0, direction >= 0 ? MazeTopology.DIR_Y[direction] : 0);
+            send(session, share);
+            if (engine.isFinished()) {
+                engine.reset(session.seeds.nextLong());
+                session.encoder.invalidate();
+            }
+        }
+    }
+
+    // Sends the session's next frame, unless its previous one has still not gone out in full.
+    private void send(Session session, int share) {
+        ByteBuffer out = session.out;
+        try {
+            if (out.hasRemaining()) {
+                session.channel.write(out);
+                if (out.hasRemaining()) {
+                    skippedFrames[share]++;
+                    return;
+                }
+            }
+            out.clear();
+            session.encoder.write(session.engine, out);
+            session.channel.write(out.flip());
+        } catch (IOException e) {
+            close(session);
+        }
+    }
+
+    // Prints tick latency percentiles and the sessions one core could keep up with at this tick rate.
+    private void report(long windowNanos) {
+        PrintStream out = report;
+        if (out != null && tickLatency.getCount() > 0) {
+            int threads = gang.getThreads();
+            long skipped = 0;
+            for (long count : skippedFrames) {
+                skipped += count;
+            }
+            double cpuPerSession = sessionTicks == 0 ? 0 : tickWork.getMean() * tickWork.getCount() * threads / sessionTicks;
+            out.printf("sessions=%d threads=%d ticks=%d/%.1fs tick latency p50=%.2f p99=%.2f p99.9=%.2f max=%.2f ms, "
+                            + "%.1f us/session-tick, ~%.0f sessions/core, %d frames skipped%n",
+                    sessionCount, threads, tickLatency.getCount(), windowNanos / 1e9,
+                    tickLatency.getValueAtPercentile(50) / 1e6, tickLatency.getValueAtPercentile(99) / 1e6,
+                    tickLatency.getValueAtPercentile(99.9) / 1e6, tickLatency.getMax() / 1e6,
+                    cpuPerSession / 1e3, cpuPerSession == 0 ? 0 : TICK_NANOS / cpuPerSession, skipped);
+        }
+        tickLatency.reset();
+        tickWork.reset();
+        sessionTicks = 0;
+        Arrays.fill(skippedFrames, 0);
+    }
+
+    // Stops both threads and closes every connection.
+    @Override
+    public void close() throws IOException {
+        running = false;
+        if (selector != null) {
+            selector.wakeup();
+        }
+        try {
+            if (tickThread != null) {
+                tickThread.join();
+            }
+            if (ioThread != null) {
+                ioThread.join();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        gang.close();
+        for (int i = 0; i < sessionCount; i++) {
+            close(sessions[i]);
+        }
+        for (Session session : joins) {
+            close(session);
+        }
+        if (selector != null) {
+            selector.close();
+        }
+        if (server != null) {
+            server.close();
+        }
+    }
+
+    // Usage: GameServer [port] [threads] [loopback players] [seconds] [maze file]
+    // With loopback players, runs that many stand-in clients against the server for the given time and
+    // exits; otherwise serves until killed. Reports go to standard output.
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 7777;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        int players = args.length > 2 ? Integer.parseInt(args[2]) : 0;
+        int seconds = args.length > 3 ? Integer.parseInt(args[3]) : 30;
+        Maze maze = args.length > 4 ? Maze.load(Paths.get(args[4])) : Maze.standard();
+
+        GameServer gameServer = new GameServer(maze, GameEngine.DEFAULT_GHOST_COUNT, threads, GameRandom.randomSeed());
+        gameServer.setReport(System.out);
+        gameServer.start(new InetSocketAddress(port));
+        System.out.println("listening on port " + gameServer.getPort());
+        if (players == 0) {
+            Thread.currentThread().join();
+        }
+        try (LoopbackPlayers loopback = new LoopbackPlayers(new InetSocketAddress("localhost", gameServer.getPort()), players, 1)) {
+            loopback.start();
+            Thread.sleep(seconds * 1000L);
+            System.out.printf("loopback: %d players, %d frames, %.1f bytes/frame, %d protocol errors%n",
+                    players, loopback.getFrames(), (double) loopback.getBytes() / Math.max(1, loopback.getFrames()),
+                    loopback.getErrors());
+        }
+        gameServer.close();
+    }
+}
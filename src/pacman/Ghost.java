@@ -0,0 +1,188 @@
+package pacman;
+
+import java.awt.Color;
+import java.awt.Graphics;
+
+// A ghost, as a view over one slot of a GhostPool; all of its state lives in the pool's arrays.
+public class Ghost extends Sprite {
+    // Colours of an edible ghost, as 0xRRGGBB: blue, flashing white as its time runs out.
+    public static final int EDIBLE_COLOR = 0x0000FF;
+    public static final int FLASH_COLOR = 0xFFFFFF;
+
+    private final GhostPool pool;
+    private final int index;
+
+    // Constructs the view of ghost index in pool. Ghosts are created through GhostPool.add.
+    Ghost(GhostPool pool, int index) {
+        super(0, 0, pool.getGhostSize(), pool.getGhostSize());
+        this.pool = pool;
+        this.index = index;
+    }
+
+    // Draws the ghost, handling its appearance based on state (e.g., edible, flashing).
+    public void draw(Graphics g) {
+        draw(g, 1.0);
+    }
+
+    // Draws the ghost interpolated between its last two tick positions.
+    public void draw(Graphics g, double alpha) {
+        g.setColor(new Color(getDrawColor()));
+        g.fillOval(getRenderX(alpha), getRenderY(alpha), getWidth(), getHeight());
+    }
+
+    // Returns the colour to draw the ghost in now, as 0xRRGGBB, based on its state (e.g., edible, flashing).
+    public int getDrawColor() {
+        if (isEdible()) {
+            if (isEdibleFlashing()) {
+                return pool.isFlashShowing() ? EDIBLE_COLOR : FLASH_COLOR; // Alternate colors for flashing edible ghost
+            }
+            return EDIBLE_COLOR; // Standard edible color
+        }
+        return getColor(); // Normal ghost color
+    }
+
+    public GhostPool getPool() {
+        return pool;
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    @Override
+    public void savePosition() {
+        pool.savePosition(index);
+    }
+
+    @Override
+    public int getRenderX(double alpha) {
+        return interpolate(pool.getPrevX(index), pool.getX(index), getWidth(), alpha);
+    }
+
+    @Override
+    public int getRenderY(double alpha) {
+        return interpolate(pool.getPrevY(index), pool.getY(index), getHeight(), alpha);
+    }
+
+    @Override
+    public void move() {
+        pool.move(index);
+    }
+
+    @Override
+    public int getX() {
+        return pool.getX(index);
+    }
+
+    @Override
+    public int getY() {
+        return pool.getY(index);
+    }
+
+    @Override
+    public int getDx() {
+        return pool.getDx(index);
+    }
+
+    @Override
+    public int getDy() {
+        return pool.getDy(index);
+    }
+
+    @Override
+    public void setX(int x) {
+        pool.setX(index, x);
+    }
+
+    @Override
+    public void setY(int y) {
+        pool.setY(index, y);
+    }
+
+    @Override
+    public void setDx(int dx) {
+        pool.setDx(index, dx);
+    }
+
+    @Override
+    public void setDy(int dy) {
+        pool.setDy(index, dy);
+    }
+
+    public boolean isEdible() {
+        return pool.isEdible(index);
+    }
+
+    public void setEdible(boolean edible) {
+        pool.setEdible(index, edible);
+    }
+
+    public int getColor() {
+        return pool.getColor(index);
+    }
+
+    public boolean isInCage() {
+        return pool.isInCage(index);
+    }
+
+    public void setInCage(boolean inCage) {
+        pool.setInCage(index, inCage);
+    }
+
+    public long getReleaseDelay() {
+        return pool.getReleaseDelay(index);
+    }
+
+    public int getSpeed() {
+        return pool.getSpeed(index);
+    }
+
+    public int getSpawnX() {
+        return pool.getSpawnX(index);
+    }
+
+    public int getSpawnY() {
+        return pool.getSpawnY(index);
+    }
+
+    public boolean isEdibleFlashing() {
+        return pool.isEdibleFlashing(index);
+    }
+
+    // Sets the edible flashing state, usually when Pacman's power-up is about to expire.
+    public void setEdibleFlashing(boolean edibleFlashing) {
+        pool.setEdibleFlashing(index, edibleFlashing);
+    }
+
+    public int getLastDx() {
+        return pool.getLastDx(index);
+    }
+
+    public int getLastDy() {
+        return pool.getLastDy(index);
+    }
+
+    // Updates the ghost's last movement direction and tracks consecutive moves in the same direction.
+    public void setLastDirection(int dx, int dy) {
+        pool.setLastDirection(index, dx, dy);
+    }
+
+    public int getLastMoveCounter() {
+        return pool.getLastMoveCounter(index);
+    }
+
+    // Records a tile visited by the ghost in a circular buffer for history tracking.
+    public void addVisitedTile(int row, int col) {
+        pool.addVisitedTile(index, row, col);
+    }
+
+    // Determines if the ghost has visited a specific tile recently.
+    public boolean hasRecentlyVisited(int row, int col) {
+        return pool.countVisits(index, row, col) > 0;
+    }
+
+    // Checks if the ghost has visited a specific tile frequently (at least minCount times).
+    public boolean hasVisitedFrequently(int row, int col, int minCount) {
+        return pool.countVisits(index, row, col) >= minCount;
+    }
+}
@@ -0,0 +1,125 @@
+package pacman;
+
+import java.util.Arrays;
+
+// Tile-bucketed spatial index over the ghosts of a GhostPool, for finding the few ghosts near Pacman
+// without visiting all of them. Each ghost is filed under the tile holding its top-left corner.
+// Tiles hash into a bucket table sized to the ghost count rather than the maze, so the index stays
+// small on huge mazes; buckets are intrusive doubly linked lists threaded through per-ghost arrays,
+// which makes moving a ghost between tiles O(1) and allocation-free.
+public class GhostGrid {
+    private static final int EMPTY = -1;
+
+    private final int rows;
+    private final int cols;
+    private final int xOrigin;
+    private final int yOrigin;
+    private final int tileSize;
+    private final int bucketShift;
+    private final int[] heads;
+    private final int[] next;
+    private final int[] prev;
+    private final int[] cellOf;
+
+    // Constructs an empty index for up to capacity ghosts in a rows x cols maze drawn at the given origin.
+    public GhostGrid(int capacity, int rows, int cols, int xOrigin, int yOrigin, int tileSize) {
+        this.rows = rows;
+        this.cols = cols;
+        this.xOrigin = xOrigin;
+        this.yOrigin = yOrigin;
+        this.tileSize = tileSize;
+        // Power-of-two table with at least two buckets per ghost keeps chains short.
+        int bits = Math.max(4, 32 - Integer.numberOfLeadingZeros(Math.max(1, capacity * 2 - 1)));
+        this.bucketShift = 32 - bits;
+        this.heads = new int[1 << bits];
+        this.next = new int[capacity];
+        this.prev = new int[capacity];
+        this.cellOf = new int[capacity];
+        Arrays.fill(heads, EMPTY);
+        Arrays.fill(cellOf, EMPTY);
+    }
+
+    // Files ghost g under the tile containing (x, y), relinking it only if its tile changed.
+    public void update(int g, int x, int y) {
+        int cell = cellAt(rowAt(y), colAt(x));
+        int old = cellOf[g];
+        if (cell == old) {
+            return;
+        }
+        if (old != EMPTY) {
+            unlink(g, old);
+        }
+        cellOf[g] = cell;
+        int bucket = bucketOf(cell);
+        int head = heads[bucket];
+        next[g] = head;
+        prev[g] = EMPTY;
+        if (head != EMPTY) {
+            prev[head] = g;
+        }
+        heads[bucket] = g;
+    }
+
+    private void unlink(int g, int cell) {
+        int p = prev[g];
+        int n = next[g];
+        if (p != EMPTY) {
+            next[p] = n;
+        } else {
+            heads[bucketOf(cell)] = n;
+        }
+        if (n != EMPTY) {
+            prev[n] = p;
+        }
+    }
+
+    // Collects the ghosts filed under the tile containing (x, y) or any of its eight neighbours into out,
+    // in ascending index order, and returns how many there are. out must hold every ghost in the index.
+    // Any ghost whose top-left corner is within one tile of (x, y) on both axes is included.
+    public int query(int x, int y, int[] out) {
+        int row = rowAt(y);
+        int col = colAt(x);
+        int count = 0;
+        for (int r = Math.max(0, row - 1); r <= Math.min(rows - 1, row + 1); r++) {
+            for (int c = Math.max(0, col - 1); c <= Math.min(cols - 1, col + 1); c++) {
+                int cell = cellAt(r, c);
+                // A bucket may also hold other tiles that hashed alike; keep only this one's ghosts.
+                for (int g = heads[bucketOf(cell)]; g != EMPTY; g = next[g]) {
+                    if (cellOf[g] == cell) {
+                        count = insertSorted(out, count, g);
+                    }
+                }
+            }
+        }
+        return count;
+    }
+
+    // Inserts g into the sorted prefix out[0, count); candidate lists are tiny, so insertion sort is enough.
+    private static int insertSorted(int[] out, int count, int g) {
+        int i = count;
+        while (i > 0 && out[i - 1] > g) {
+            out[i] = out[i - 1];
+            i--;
+        }
+        out[i] = g;
+        return count + 1;
+    }
+
+    // Tile row of a y coordinate, clamped to the maze so off-board positions still land in a bucket.
+    private int rowAt(int y) {
+        return Math.min(rows - 1, Math.max(0, Math.floorDiv(y - yOrigin, tileSize)));
+    }
+
+    private int colAt(int x) {
+        return Math.min(cols - 1, Math.max(0, Math.floorDiv(x - xOrigin, tileSize)));
+    }
+
+    private int cellAt(int row, int col) {
+        return row * cols + col;
+    }
+
+    // Fibonacci hashing: spreads neighbouring tiles over the table.
+    private int bucketOf(int cell) {
+        return (cell * 0x9E3779B9) >>> bucketShift;
+    }
+}
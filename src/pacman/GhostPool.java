@@ -0,0 +1,378 @@
+package pacman;
+
+import java.nio.ByteBuffer;
+
+// Struct-of-arrays storage for every ghost in a game. Positions, velocities, state flags and tile
+// history live in parallel primitive arrays indexed by ghost, so per-tick passes over thousands of
+// ghosts walk contiguous memory instead of chasing one object per ghost.
+// Ghost objects are thin views over one index of the pool. A GhostGrid is kept current as ghosts move,
+// so collision checks only look at ghosts near Pacman; advance() leaves that to a later reindex(), so a
+// pass over the ghosts can be split across threads.
+public class GhostPool {
+    // Number of recently visited tiles remembered per ghost.
+    public static final int HISTORY_LENGTH = 3;
+
+    private static final int IN_CAGE = 1;
+    private static final int EDIBLE = 2;
+    private static final int FLASHING = 4;
+
+    private final int size;
+    private final int rows;
+    private final int cols;
+    private int count;
+
+    // Kinematics, in pixels.
+    private final int[] x;
+    private final int[] y;
+    private final int[] dx;
+    private final int[] dy;
+    private final int[] prevX;
+    private final int[] prevY;
+    private final int[] spawnX;
+    private final int[] spawnY;
+    private final int[] speed;
+
+    // Game state.
+    private final byte[] flags;
+    private final long[] releaseDelay;
+    private final byte[] lastDx;
+    private final byte[] lastDy;
+    private final int[] lastMoveCounter;
+    // Recent tiles as row * cols + col, HISTORY_LENGTH per ghost, -1 for an empty slot.
+    private final int[] history;
+    private final byte[] historyIndex;
+
+    // Rendering state.
+    private final int[] colors; // 0xRRGGBB; the renderer turns them into Colors.
+    private boolean flashShow = true; // Whether flashing ghosts show their edible colour this tick.
+    private final Ghost[] views;
+    private final GhostGrid grid;
+
+    // Constructs an empty pool for up to capacity ghosts of the given size, in a maze of rows x cols tiles
+    // of that size drawn at (xOrigin, yOrigin).
+    public GhostPool(int capacity, int size, int rows, int cols, int xOrigin, int yOrigin) {
+        this.size = size;
+        this.rows = rows;
+        this.cols = cols;
+        x = new int[capacity];
+        y = new int[capacity];
+        dx = new int[capacity];
+        dy = new int[capacity];
+        prevX = new int[capacity];
+        prevY = new int[capacity];
+        spawnX = new int[capacity];
+        spawnY = new int[capacity];
+        speed = new int[capacity];
+        flags = new byte[capacity];
+        releaseDelay = new long[capacity];
+        lastDx = new byte[capacity];
+        lastDy = new byte[capacity];
+        lastMoveCounter = new int[capacity];
+        history = new int[capacity * HISTORY_LENGTH];
+        historyIndex = new byte[capacity];
+        colors = new int[capacity];
+        views = new Ghost[capacity];
+        grid = new GhostGrid(capacity, rows, cols, xOrigin, yOrigin, size);
+    }
+
+    // Adds a caged ghost at (x, y) and returns its view.
+    public Ghost add(int x, int y, int color, long releaseDelaySeconds) {
+        int g = count++;
+        this.x[g] = x;
+        this.y[g] = y;
+        prevX[g] = x;
+        prevY[g] = y;
+        spawnX[g] = x;
+        spawnY[g] = y;
+        speed[g] = size / 4;
+        flags[g] = IN_CAGE;
+        releaseDelay[g] = releaseDelaySeconds * 1000;
+        for (int h = 0; h < HISTORY_LENGTH; h++) {
+            history[g * HISTORY_LENGTH + h] = -1;
+        }
+        colors[g] = color;
+        views[g] = new Ghost(this, g);
+        grid.update(g, x, y);
+        return views[g];
+    }
+
+    // Puts every ghost back in the house at its spawn, as added.
+    public void respawnAll() {
+        for (int g = 0; g < count; g++) {
+            x[g] = spawnX[g];
+            y[g] = spawnY[g];
+            prevX[g] = x[g];
+            prevY[g] = y[g];
+            dx[g] = 0;
+            dy[g] = 0;
+            flags[g] = IN_CAGE;
+            lastDx[g] = 0;
+            lastDy[g] = 0;
+            lastMoveCounter[g] = 0;
+            for (int h = 0; h < HISTORY_LENGTH; h++) {
+                history[g * HISTORY_LENGTH + h] = -1;
+            }
+            historyIndex[g] = 0;
+            grid.update(g, x[g], y[g]);
+        }
+    }
+
+    public int size() {
+        return count;
+    }
+
+    // Returns the view of ghost g; the same object every time.
+    public Ghost view(int g) {
+        return views[g];
+    }
+
+    public int getGhostSize() {
+        return size;
+    }
+
+    // Returns the spatial index of the ghosts' tiles.
+    public GhostGrid getGrid() {
+        return grid;
+    }
+
+    // Remembers every ghost's current position as where the next tick starts from.
+    public void savePositions() {
+        System.arraycopy(x, 0, prevX, 0, count);
+        System.arraycopy(y, 0, prevY, 0, count);
+    }
+
+    // Makes every ghost edible or not, and stops any flashing.
+    public void setAllEdible(boolean edible) {
+        for (int g = 0; g < count; g++) {
+            flags[g] = (byte) (edible ? (flags[g] | EDIBLE) & ~FLASHING : flags[g] & ~(EDIBLE | FLASHING));
+        }
+    }
+
+    // Makes every edible ghost flash, showing its edible colour this tick or not; called every tick of the
+    // flashing, which keeps the phase in step with the game clock.
+    public void flashEdible(boolean show) {
+        for (int g = 0; g < count; g++) {
+            if ((flags[g] & EDIBLE) != 0) {
+                flags[g] |= FLASHING;
+            }
+        }
+        flashShow = show;
+    }
+
+    // Returns whether flashing ghosts show their edible colour, as of the last flashEdible().
+    public boolean isFlashShowing() {
+        return flashShow;
+    }
+
+    // Returns the number of bytes saveState() writes.
+    public int stateSize() {
+        return count * (Integer.BYTES * (5 + HISTORY_LENGTH) + 4);
+    }
+
+    // Writes every ghost's position, velocity, flags and AI memory. Spawns, speeds and release delays
+    // are fixed by the maze, and the flash phase follows the engine's power timer, so neither is saved.
+    public void saveState(ByteBuffer out) {
+        for (int g = 0; g < count; g++) {
+            out.putInt(x[g]).putInt(y[g]).putInt(dx[g]).putInt(dy[g]);
+            out.put(flags[g]).put(lastDx[g]).put(lastDy[g]).put(historyIndex[g]);
+            out.putInt(lastMoveCounter[g]);
+            for (int h = 0; h < HISTORY_LENGTH; h++) {
+                out.putInt(history[g * HISTORY_LENGTH + h]);
+            }
+        }
+    }
+
+    // Restores a state written by saveState() on a pool with the same ghosts. Ghosts are not interpolated
+    // across the jump; the flash phase catches up on the next tick.
+    public void restoreState(ByteBuffer in) {
+        for (int g = 0; g < count; g++) {
+            x[g] = in.getInt();
+            y[g] = in.getInt();
+            dx[g] = in.getInt();
+            dy[g] = in.getInt();
+            flags[g] = in.get();
+            lastDx[g] = in.get();
+            lastDy[g] = in.get();
+            historyIndex[g] = in.get();
+            lastMoveCounter[g] = in.getInt();
+            for (int h = 0; h < HISTORY_LENGTH; h++) {
+                history[g * HISTORY_LENGTH + h] = in.getInt();
+            }
+            prevX[g] = x[g];
+            prevY[g] = y[g];
+            grid.update(g, x[g], y[g]);
+        }
+    }
+
+    // Updates the position of ghost g by its velocity.
+    public void move(int g) {
+        x[g] += dx[g];
+        y[g] += dy[g];
+        grid.update(g, x[g], y[g]);
+    }
+
+    // Moves ghost g by its velocity, wrapping horizontally: left of minX it reappears at maxX, and at or past
+    // maxX at minX. Leaves the grid alone, so ghosts can be moved from several threads at once; call
+    // reindex() once they all have.
+    public void advance(int g, int minX, int maxX) {
+        int nx = x[g] + dx[g];
+        if (nx < minX) {
+            nx = maxX;
+        } else if (nx >= maxX) {
+            nx = minX;
+        }
+        x[g] = nx;
+        y[g] += dy[g];
+    }
+
+    // Brings the grid up to date with the positions of the ghosts out of the cage; caged ghosts do not move.
+    public void reindex() {
+        for (int g = 0; g < count; g++) {
+            if ((flags[g] & IN_CAGE) == 0) {
+                grid.update(g, x[g], y[g]);
+            }
+        }
+    }
+
+    public int getX(int g) {
+        return x[g];
+    }
+
+    public int getY(int g) {
+        return y[g];
+    }
+
+    public int getDx(int g) {
+        return dx[g];
+    }
+
+    public int getDy(int g) {
+        return dy[g];
+    }
+
+    public int getPrevX(int g) {
+        return prevX[g];
+    }
+
+    public int getPrevY(int g) {
+        return prevY[g];
+    }
+
+    public void setX(int g, int value) {
+        x[g] = value;
+        grid.update(g, value, y[g]);
+    }
+
+    public void setY(int g, int value) {
+        y[g] = value;
+        grid.update(g, x[g], value);
+    }
+
+    public void setDx(int g, int value) {
+        dx[g] = value;
+    }
+
+    public void setDy(int g, int value) {
+        dy[g] = value;
+    }
+
+    public void savePosition(int g) {
+        prevX[g] = x[g];
+        prevY[g] = y[g];
+    }
+
+    public int getSpeed(int g) {
+        return speed[g];
+    }
+
+    public int getSpawnX(int g) {
+        return spawnX[g];
+    }
+
+    public int getSpawnY(int g) {
+        return spawnY[g];
+    }
+
+    public long getReleaseDelay(int g) {
+        return releaseDelay[g];
+    }
+
+    public int getColor(int g) {
+        return colors[g];
+    }
+
+    public boolean isInCage(int g) {
+        return (flags[g] & IN_CAGE) != 0;
+    }
+
+    public void setInCage(int g, boolean inCage) {
+        setFlag(g, IN_CAGE, inCage);
+    }
+
+    public boolean isEdible(int g) {
+        return (flags[g] & EDIBLE) != 0;
+    }
+
+    public void setEdible(int g, boolean edible) {
+        setFlag(g, EDIBLE, edible);
+    }
+
+    public boolean isEdibleFlashing(int g) {
+        return (flags[g] & FLASHING) != 0;
+    }
+
+    public void setEdibleFlashing(int g, boolean flashing) {
+        setFlag(g, FLASHING, flashing);
+    }
+
+    private void setFlag(int g, int flag, boolean on) {
+        flags[g] = (byte) (on ? flags[g] | flag : flags[g] & ~flag);
+    }
+
+    public int getLastDx(int g) {
+        return lastDx[g];
+    }
+
+    public int getLastDy(int g) {
+        return lastDy[g];
+    }
+
+    // Updates ghost g's last movement direction and counts consecutive moves in the same direction.
+    public void setLastDirection(int g, int dirX, int dirY) {
+        if (dirX == lastDx[g] && dirY == lastDy[g]) {
+            lastMoveCounter[g]++;
+        } else {
+            lastMoveCounter[g] = 0;
+            lastDx[g] = (byte) dirX;
+            lastDy[g] = (byte) dirY;
+        }
+    }
+
+    public int getLastMoveCounter(int g) {
+        return lastMoveCounter[g];
+    }
+
+    // Records a tile visited by ghost g in its circular history.
+    public void addVisitedTile(int g, int row, int col) {
+        int slot = historyIndex[g];
+        history[g * HISTORY_LENGTH + slot] = row * cols + col;
+        historyIndex[g] = (byte) ((slot + 1) % HISTORY_LENGTH);
+    }
+
+    // Counts how many of ghost g's remembered tiles are (row, col).
+    public int countVisits(int g, int row, int col) {
+        // Off-maze tiles (beyond a tunnel mouth) were never recorded, and must not alias a packed index.
+        if (row < 0 || row >= rows || col < 0 || col >= cols) {
+            return 0;
+        }
+        int tile = row * cols + col;
+        int base = g * HISTORY_LENGTH;
+        int visits = 0;
+        for (int h = 0; h < HISTORY_LENGTH; h++) {
+            if (history[base + h] == tile) {
+                visits++;
+            }
+        }
+        return visits;
+    }
+}
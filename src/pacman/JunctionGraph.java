@@ -0,0 +1,117 @@
+package pacman;
+
+// The maze compiled into junction nodes joined by corridor edges.
+// A junction is any open tile without exactly two exits (a fork, crossing or dead end);
+// every other tile lies on a corridor where the only way forward is already known.
+public final class JunctionGraph {
+    private final MazeTopology topology;
+    private final byte[] exits;            // topology node -> bit mask of open directions
+    private final int[] junctionOfNode;    // topology node -> junction index, or -1 on corridors
+    private final int[] junctionNodes;     // junction index -> topology node
+    private final int[] edgeTargets;       // junction * 4 + dir -> junction reached, or -1
+    private final int[] edgeLengths;       // junction * 4 + dir -> corridor length in tiles
+
+    // Classifies every open tile and walks each corridor once from both ends.
+    public JunctionGraph(MazeTopology topology) {
+        this.topology = topology;
+        int nodeCount = topology.getOpenTileCount();
+
+        exits = new byte[nodeCount];
+        junctionOfNode = new int[nodeCount];
+        int junctionCount = 0;
+        for (int n = 0; n < nodeCount; n++) {
+            int mask = 0;
+            for (int d = 0; d < 4; d++) {
+                if (topology.neighbor(n, d) >= 0) {
+                    mask |= 1 << d;
+                }
+            }
+            exits[n] = (byte) mask;
+            junctionOfNode[n] = Integer.bitCount(mask) != 2 ? junctionCount++ : -1;
+        }
+
+        junctionNodes = new int[junctionCount];
+        for (int n = 0; n < nodeCount; n++) {
+            if (junctionOfNode[n] >= 0) {
+                junctionNodes[junctionOfNode[n]] = n;
+            }
+        }
+
+        edgeTargets = new int[junctionCount * 4];
+        edgeLengths = new int[junctionCount * 4];
+        for (int j = 0; j < junctionCount; j++) {
+            for (int d = 0; d < 4; d++) {
+                edgeTargets[j * 4 + d] = -1;
+                int node = topology.neighbor(junctionNodes[j], d);
+                if (node < 0) {
+                    continue;
+                }
+                // Follow the corridor until it reaches a junction (or loops back on itself).
+                int dir = d;
+                int length = 1;
+                while (junctionOfNode[node] < 0 && length <= nodeCount) {
+                    dir = corridorDirection(node, dir);
+                    node = topology.neighbor(node, dir);
+                    length++;
+                }
+                if (junctionOfNode[node] >= 0) {
+                    edgeTargets[j * 4 + d] = junctionOfNode[node];
+                    edgeLengths[j * 4 + d] = length;
+                }
+            }
+        }
+    }
+
+    public MazeTopology getTopology() {
+        return topology;
+    }
+
+    // Returns the bit mask of directions (1 << MazeTopology.RIGHT etc.) that lead to open tiles.
+    public int exits(int node) {
+        return exits[node];
+    }
+
+    public boolean isJunction(int node) {
+        return junctionOfNode[node] >= 0;
+    }
+
+    // Returns the direction to keep moving along a corridor tile entered while heading in dir.
+    // Goes straight if possible, otherwise takes the bend; never reverses.
+    public int corridorDirection(int node, int dir) {
+        int mask = exits[node];
+        if ((mask & (1 << dir)) != 0) {
+            return dir;
+        }
+        int remaining = mask & ~(1 << reverse(dir));
+        return Integer.numberOfTrailingZeros(remaining);
+    }
+
+    // Returns the opposite of a MazeTopology direction index.
+    public static int reverse(int dir) {
+        return dir ^ 1;
+    }
+
+    public int getJunctionCount() {
+        return junctionNodes.length;
+    }
+
+    // Returns the topology node of a junction.
+    public int nodeOfJunction(int junction) {
+        return junctionNodes[junction];
+    }
+
+    // Returns the junction index of a topology node, or -1 if it lies on a corridor.
+    public int junctionOfNode(int node) {
+        return junctionOfNode[node];
+    }
+
+    // Returns the junction at the far end of the corridor leaving a junction in dir, or -1.
+    public int edgeTarget(int junction, int dir) {
+        return edgeTargets[junction * 4 + dir];
+    }
+
+    // Returns the length in tiles of the corridor leaving a junction in dir.
+    public int edgeLength(int junction, int dir) {
+        return edgeLengths[junction * 4 + dir];
+    }
+}
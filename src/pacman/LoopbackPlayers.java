@@ -0,0 +1,187 @@
+package pacman;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+
+// Stand-in players for a GameServer: many connections driven by one thread, each turning at random about
+// once a second and applying its game's frames to a StateMirror. Loads a server for measurements, and lets
+// tests check what it sends without real clients.
+public final class LoopbackPlayers implements AutoCloseable {
+    private static final long TURN_NANOS = 1_000_000_000L;
+
+    private final Selector selector;
+    private final Player[] players;
+    private final GameRandom random;
+    private Thread thread;
+    private volatile boolean running;
+    private volatile long frames;
+    private volatile long bytes;
+    private volatile long errors;
+
+    // One connection, with its incoming bytes and the game they describe.
+    private static final class Player {
+        final SocketChannel channel;
+        final StateMirror mirror = new StateMirror();
+        ByteBuffer in = ByteBuffer.allocate(4096);
+        long nextTurn;
+
+        Player(SocketChannel channel) {
+            this.channel = channel;
+        }
+    }
+
+    // Connects count players to a server. Nothing is sent or read until start().
+    public LoopbackPlayers(InetSocketAddress server, int count, long seed) throws IOException {
+        selector = Selector.open();
+        players = new Player[count];
+        random = new GameRandom(seed);
+        try {
+            for (int i = 0; i < count; i++) {
+                SocketChannel channel = SocketChannel.open(server);
+                channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                channel.configureBlocking(false);
+                players[i] = new Player(channel);
+                channel.register(selector, SelectionKey.OP_READ, players[i]);
+            }
+        } catch (IOException e) {
+            close();
+            throw e;
+        }
+    }
+
+    // Starts the thread that plays for every connection.
+    public void start() {
+        running = true;
+        thread = new Thread(this::play, "loopback-players");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void play() {
+        ByteBuffer turn = ByteBuffer.allocateDirect(1);
+        long start = System.nanoTime();
+        for (Player player : players) {
+            player.nextTurn = start + (long) (random.nextDouble() * TURN_NANOS);
+        }
+        try {
+            while (running) {
+                selector.select(10);
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (key.isValid() && key.isReadable()) {
+                        receive((Player) key.attachment());
+                    }
+                }
+                long now = System.nanoTime();
+                for (Player player : players) {
+                    if (now - player.nextTurn >= 0 && player.channel.isOpen()) {
+                        turn.clear().put(0, (byte) (1 + random.nextInt(4)));
+                        player.channel.write(turn);
+                        player.nextTurn = now + (long) ((0.5 + random.nextDouble()) * TURN_NANOS);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            if (running) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    // Reads what has arrived for a player and applies every complete frame.
+    private void receive(Player player) throws IOException {
+        int n = player.channel.read(player.in);
+        if (n < 0) {
+            player.channel.close();
+            return;
+        }
+        bytes += n;
+        ByteBuffer in = player.in.flip();
+        while (in.remaining() >= 4) {
+            int length = in.getInt(in.position());
+            if (length <= 0) {
+                errors++;
+                player.channel.close();
+                return;
+            }
+            if (in.remaining() < 4 + length) {
+                if (4 + length > in.capacity()) {
+                    // A frame bigger than the buffer: grow it to fit.
+                    ByteBuffer bigger = ByteBuffer.allocate(4 + length);
+                    bigger.put(in);
+                    player.in = bigger;
+                    return;
+                }
+                break;
+            }
+            int end = in.position() + 4 + length;
+            try {
+                player.mirror.apply(in);
+                if (in.position() != end) {
+                    errors++;
+                }
+            } catch (RuntimeException e) {
+                errors++;
+            }
+            in.position(end);
+            frames++;
+        }
+        in.compact();
+    }
+
+    // Returns the mirror of player i's game; only consistent while the players are stopped.
+    public StateMirror getMirror(int i) {
+        return players[i].mirror;
+    }
+
+    public int getCount() {
+        return players.length;
+    }
+
+    public long getFrames() {
+        return frames;
+    }
+
+    public long getBytes() {
+        return bytes;
+    }
+
+    // Returns the number of frames that could not be applied, or were longer or shorter than they said.
+    public long getErrors() {
+        return errors;
+    }
+
+    // Stops playing, keeping the connections open.
+    public void stop() throws InterruptedException {
+        running = false;
+        if (thread != null) {
+            selector.wakeup();
+            thread.join();
+            thread = null;
+        }
+    }
+
+    // Stops playing and disconnects every player.
+    @Override
+    public void close() throws IOException {
+        try {
+            stop();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (Player player : players) {
+            if (player != null) {
+                player.channel.close();
+            }
+        }
+        selector.close();
+    }
+}
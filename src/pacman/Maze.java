@@ -0,0 +1,444 @@
+package pacman;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+// A maze layout: its walls, power pellets and ghost house, loaded from a text file or built in.
+//
+// The file format is a header of "key values..." lines followed by "map" and one line per tile row:
+//
+//   # comment
+//   size 28 31                      columns and rows (required)
+//   house 11 10 19 17               ghost house as top row, left col, bottom row, right col (required)
+//   exit 11                         row ghosts are released onto, above their spawn column (required)
+//   spawn 14 13 14 14 15 13 15 14   ghost start tiles as row/col pairs, inside the house (required)
+//   pelletrows 11 17                rows of the house that still get pellets (optional)
+//   map
+//   XXXXXXXXXXXXXXXXXXXXXXXXXXXX
+//   Xo...........XX...........oX
+//   ...
+//
+// In the map 'X' is a wall, 'o' a power pellet, and '.' or ' ' an open tile. Open tiles on the left and
+// right edges are tunnel mouths that wrap to the other side. The file is parsed one line at a time into
+// chunked bit sets, so mazes far larger than the screen can be loaded without holding the text in memory.
+public class Maze {
+
+    public static final int TILE_SIZE = 8;
+    // Dimensions of the standard maze.
+    public static final int COLS = 28;
+    public static final int ROWS = 31;
+
+    private static final String[] STANDARD_HEADER = {
+            "size " + COLS + " " + ROWS,
+            "house 11 10 19 17",
+            "exit 11",
+            "spawn 14 13 14 14 15 13 15 14",
+            "pelletrows 11 17"
+    };
+
+    private static final String[] BASE_MAP = {
+            "XXXXXXXXXXXXXXXXXXXXXXXXXXXX",
+            "Xo...........XX...........oX",
+            "X.XXXX.XXXXX.XX.XXXXX.XXXX.X",
+            "X.XXXX.XXXXX.XX.XXXXX.XXXX.X",
+            "X.XXXX.XXXXX.XX.XXXXX.XXXX.X",
+            "X..........................X",
+            "X.XXXX.XX.XXXXXXXX.XX.XXXX.X",
+            "X.XXXX.XX.XXXXXXXX.XX.XXXX.X",
+            "X......XX....XX....XX......X",
+            "XXXXXX.XXXXX XX XXXXX.XXXXXX",
+            "     X.XXXXX XX XXXXX.X     ",
+            "     X.XX          XX.X     ",
+            "     X.XX XXXXXXXX XX.X     ",
+            "XXXXXX.XX X      X XX.XXXXXX",
+            "      .   X      X   .      ",
+            "XXXXXX.XX X      X XX.XXXXXX",
+            "     X.XX XXXXXXXX XX.X     ",
+            "     X.XX          XX.X     ",
+            "     X.XX XXXXXXXX XX.X     ",
+            "XXXXXX.XX XXXXXXXX XX.XXXXXX",
+            "X............XX............X",
+            "X.XXXX.XXXXX.XX.XXXXX.XXXX.X",
+            "X.XXXX.XXXXX.XX.XXXXX.XXXX.X",
+            "X...XX.......  .......XX...X",
+            "XXX.XX.XX.XXXXXXXX.XX.XX.XXX",
+            "XXX.XX.XX.XXXXXXXX.XX.XX.XXX",
+            "X......XX....XX....XX......X",
+            "X.XXXXXXXXXX.XX.XXXXXXXXXX.X",
+            "X.XXXXXXXXXX.XX.XXXXXXXXXX.X",
+            "Xo........................oX",
+            "XXXXXXXXXXXXXXXXXXXXXXXXXXXX"
+    };
+
+    private final int width;
+    private final int height;
+    private final TileBitSet walls;
+    private final TileBitSet powerPellets;
+    private final int houseTop;
+    private final int houseLeft;
+    private final int houseBottom;
+    private final int houseRight;
+    private final int houseExitRow;
+    private final int[] ghostSpawns; // row, col pairs
+    private final int[] housePelletRows;
+    private volatile MazeTopology topology;
+    private volatile JunctionGraph junctions;
+    private volatile PathTable paths;
+    private volatile long checksum = -1; // Unsigned CRC-32, or -1 until first asked for.
+
+    // Shared instance of the standard maze; mazes are read-only, so every engine can use it.
+    private static final Maze STANDARD = buildStandard();
+
+    // Constructs a maze from checked parts; see create().
+    private Maze(int width, int height, TileBitSet walls, TileBitSet powerPellets, int[] house,
+                 int houseExitRow, int[] ghostSpawns, int[] housePelletRows) {
+        this.width = width;
+        this.height = height;
+        this.walls = walls;
+        this.powerPellets = powerPellets;
+        this.houseTop = house[0];
+        this.houseLeft = house[1];
+        this.houseBottom = house[2];
+        this.houseRight = house[3];
+        this.houseExitRow = houseExitRow;
+        this.ghostSpawns = ghostSpawns;
+        this.housePelletRows = housePelletRows;
+    }
+
+    // Returns the standard 28x31 maze, whose topology is only ever built once.
+    public static Maze standard() {
+        return STANDARD;
+    }
+
+    private static Maze buildStandard() {
+        StringBuilder text = new StringBuilder();
+        for (String line : STANDARD_HEADER) {
+            text.append(line).append('\n');
+        }
+        text.append("map\n");
+        for (String line : BASE_MAP) {
+            text.append(line).append('\n');
+        }
+        try {
+            return read(new StringReader(text.toString()));
+        } catch (IOException e) {
+            throw new IllegalStateException("The standard maze is malformed", e);
+        }
+    }
+
+    // Loads a maze file.
+    public static Maze load(Path path) throws IOException {
+        try (BufferedReader in = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            return read(in);
+        }
+    }
+
+    // Reads a maze in the text format described above. Malformed input fails with an IOException
+    // naming the offending line.
+    public static Maze read(Reader source) throws IOException {
+        BufferedReader in = source instanceof BufferedReader ? (BufferedReader) source : new BufferedReader(source);
+        int lineNumber = 0;
+        int width = -1;
+        int height = -1;
+        int[] house = null;
+        int exitRow = -1;
+        int[] spawns = null;
+        int[] pelletRows = new int[0];
+
+        // Header.
+        while (true) {
+            String line = in.readLine();
+            lineNumber++;
+            if (line == null) {
+                throw new IOException("line " + lineNumber + ": no map section");
+            }
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            if (line.equals("map")) {
+                break;
+            }
+            String[] parts = line.split("\\s+");
+            int[] values = parseValues(parts, lineNumber);
+            switch (parts[0]) {
+                case "size":
+                    requireCount(values, 2, 2, parts[0], lineNumber);
+                    width = values[0];
+                    height = values[1];
+                    if (width < 1 || height < 1 || (long) width * height > Integer.MAX_VALUE) {
+                        throw new IOException("line " + lineNumber + ": unsupported size " + width + "x" + height);
+                    }
+                    break;
+                case "house":
+                    requireCount(values, 4, 4, parts[0], lineNumber);
+                    house = values;
+                    break;
+                case "exit":
+                    requireCount(values, 1, 1, parts[0], lineNumber);
+                    exitRow = values[0];
+                    break;
+                case "spawn":
+                    requireCount(values, 2, Integer.MAX_VALUE, parts[0], lineNumber);
+                    if (values.length % 2 != 0) {
+                        throw new IOException("line " + lineNumber + ": spawn needs row/col pairs");
+                    }
+                    spawns = values;
+                    break;
+                case "pelletrows":
+                    pelletRows = values;
+                    break;
+                default:
+                    throw new IOException("line " + lineNumber + ": unknown header key '" + parts[0] + "'");
+            }
+        }
+        if (width < 0 || house == null || exitRow < 0 || spawns == null) {
+            throw new IOException("line " + lineNumber + ": header needs size, house, exit and spawn");
+        }
+
+        // Map rows, compacting each band of chunks as soon as it is complete.
+        TileBitSet walls = new TileBitSet(height, width);
+        TileBitSet powerPellets = new TileBitSet(height, width);
+        for (int r = 0; r < height; r++) {
+            String line = in.readLine();
+            lineNumber++;
+            if (line == null) {
+                throw new IOException("line " + lineNumber + ": expected " + height + " map rows, found " + r);
+            }
+            if (line.length() != width) {
+                throw new IOException("line " + lineNumber + ": map row is " + line.length() + " tiles wide, expected " + width);
+            }
+            for (int c = 0; c < width; c++) {
+                char ch = line.charAt(c);
+                if (ch == 'X') {
+                    walls.set(r, c);
+                } else if (ch == 'o') {
+                    powerPellets.set(r, c);
+                } else if (ch != '.' && ch != ' ') {
+                    throw new IOException("line " + lineNumber + ": unexpected '" + ch + "' in column " + c);
+                }
+            }
+            if ((r + 1) % TileBitSet.CHUNK_SIZE == 0 || r == height - 1) {
+                walls.compactChunkRow(r / TileBitSet.CHUNK_SIZE);
+                powerPellets.compactChunkRow(r / TileBitSet.CHUNK_SIZE);
+            }
+        }
+
+        return create(width, height, walls, powerPellets, house, exitRow, spawns, pelletRows);
+    }
+
+    // Builds a maze from its parts after checking that they fit together: the ghost house has to fit the
+    // map, and the ghosts have to start on open tiles inside it. house is top row, left col, bottom row,
+    // right col, and spawns holds row/col pairs.
+    static Maze create(int width, int height, TileBitSet walls, TileBitSet powerPellets, int[] house,
+                       int exitRow, int[] spawns, int[] pelletRows) throws IOException {
+        if (house[0] < 0 || house[1] < 0 || house[2] >= height || house[3] >= width
+                || house[0] > house[2] || house[1] > house[3]) {
+            throw new IOException("house " + Arrays.toString(house) + " does not fit a " + width + "x" + height + " map");
+        }
+        if (exitRow < house[0] || exitRow > house[2]) {
+            throw new IOException("exit row " + exitRow + " is outside the house");
+        }
+        for (int i = 0; i < spawns.length; i += 2) {
+            int row = spawns[i];
+            int col = spawns[i + 1];
+            if (row < house[0] || row > house[2] || col < house[1] || col > house[3] || walls.get(row, col)) {
+                throw new IOException("spawn " + row + " " + col + " is not an open tile in the house");
+            }
+        }
+        return new Maze(width, height, walls, powerPellets, house, exitRow, spawns, pelletRows);
+    }
+
+    // Writes the maze in the format read() accepts, one map row at a time.
+    public void write(Writer out) throws IOException {
+        out.write("size " + width + " " + height + "\n");
+        out.write("house " + houseTop + " " + houseLeft + " " + houseBottom + " " + houseRight + "\n");
+        out.write("exit " + houseExitRow + "\n");
+        StringBuilder line = new StringBuilder("spawn");
+        for (int value : ghostSpawns) {
+            line.append(' ').append(value);
+        }
+        out.write(line.append('\n').toString());
+        line.setLength(0);
+        line.append("pelletrows");
+        for (int row : housePelletRows) {
+            line.append(' ').append(row);
+        }
+        out.write(line.append('\n').toString());
+        out.write("map\n");
+        char[] row = new char[width + 1];
+        row[width] = '\n';
+        for (int r = 0; r < height; r++) {
+            for (int c = 0; c < width; c++) {
+                row[c] = walls.get(r, c) ? 'X' : powerPellets.get(r, c) ? 'o' : '.';
+            }
+            out.write(row);
+        }
+    }
+
+    private static int[] parseValues(String[] parts, int lineNumber) throws IOException {
+        int[] values = new int[parts.length - 1];
+        for (int i = 1; i < parts.length; i++) {
+            try {
+                values[i - 1] = Integer.parseInt(parts[i]);
+            } catch (NumberFormatException e) {
+                throw new IOException("line " + lineNumber + ": '" + parts[i] + "' is not a number");
+            }
+        }
+        return values;
+    }
+
+    private static void requireCount(int[] values, int min, int max, String key, int lineNumber) throws IOException {
+        if (values.length < min || values.length > max) {
+            throw new IOException("line " + lineNumber + ": wrong number of values for " + key);
+        }
+    }
+
+    // Returns the open-tile graph for this maze, building it on first use.
+    public MazeTopology getTopology() {
+        MazeTopology result = topology;
+        if (result == null) {
+            // Racing builders produce identical graphs, so losing a race only costs time.
+            result = new MazeTopology(this);
+            topology = result;
+        }
+        return result;
+    }
+
+    // Returns the all-pairs path table for this maze, building it on first use, or null if the maze has more
+    // than PathTable.MAX_NODES open tiles.
+    public PathTable getPathTable() {
+        PathTable result = paths;
+        if (result == null && getTopology().getOpenTileCount() <= PathTable.MAX_NODES) {
+            // Racing builders produce identical tables, so losing a race only costs time.
+            result = new PathTable(getTopology());
+            paths = result;
+        }
+        return result;
+    }
+
+    // Returns the junction/corridor graph for this maze, building it on first use.
+    public JunctionGraph getJunctions() {
+        JunctionGraph result = junctions;
+        if (result == null) {
+            result = new JunctionGraph(getTopology());
+            junctions = result;
+        }
+        return result;
+    }
+
+    // Returns the wall bits. Callers must not modify them.
+    public TileBitSet getWalls() {
+        return walls;
+    }
+
+    public boolean isWall(int row, int col) {
+        return walls.get(row, col);
+    }
+
+    // Returns the tiles marked as power pellets. Callers must not modify them.
+    public TileBitSet getPowerPellets() {
+        return powerPellets;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    // Checks if a tile lies within the ghost house rectangle.
+    public boolean isInHouse(int row, int col) {
+        return row >= houseTop && row <= houseBottom && col >= houseLeft && col <= houseRight;
+    }
+
+    public int getHouseTop() {
+        return houseTop;
+    }
+
+    public int getHouseLeft() {
+        return houseLeft;
+    }
+
+    public int getHouseBottom() {
+        return houseBottom;
+    }
+
+    public int getHouseRight() {
+        return houseRight;
+    }
+
+    // Returns the row ghosts step onto when they leave the house.
+    public int getHouseExitRow() {
+        return houseExitRow;
+    }
+
+    public int getGhostSpawnCount() {
+        return ghostSpawns.length / 2;
+    }
+
+    public int getGhostSpawnRow(int spawn) {
+        return ghostSpawns[spawn * 2];
+    }
+
+    public int getGhostSpawnCol(int spawn) {
+        return ghostSpawns[spawn * 2 + 1];
+    }
+
+    // Returns a CRC-32 of everything that shapes a game on this maze, so that a replay can check it is being
+    // played on the maze it was recorded on. Computed on first use.
+    public int getChecksum() {
+        long result = checksum;
+        if (result < 0) {
+            result = computeChecksum();
+            checksum = result;
+        }
+        return (int) result;
+    }
+
+    private long computeChecksum() {
+        CRC32 crc = new CRC32();
+        ByteBuffer buffer = ByteBuffer.allocate(8 * 256);
+        int[] header = {width, height, houseTop, houseLeft, houseBottom, houseRight, houseExitRow};
+        for (int[] values : new int[][]{header, ghostSpawns, housePelletRows}) {
+            for (int value : values) {
+                if (buffer.remaining() < 4) {
+                    flush(crc, buffer);
+                }
+                buffer.putInt(value);
+            }
+        }
+        for (TileBitSet tiles : new TileBitSet[]{walls, powerPellets}) {
+            for (int w = 0; w < tiles.wordCount(); w++) {
+                if (buffer.remaining() < 8) {
+                    flush(crc, buffer);
+                }
+                buffer.putLong(tiles.word(w));
+            }
+        }
+        flush(crc, buffer);
+        return crc.getValue();
+    }
+
+    private static void flush(CRC32 crc, ByteBuffer buffer) {
+        buffer.flip();
+        crc.update(buffer);
+        buffer.clear();
+    }
+
+    // Returns the rows inside the house that are still given pellets.
+    public int[] getHousePelletRows() {
+        return housePelletRows.clone();
+    }
+}
@@ -0,0 +1,282 @@
+package pacman;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+// Generates Pac-Man-style mazes of any size from a seed: mirrored left and right halves, a ghost house
+// in the middle, tunnels on the sides and no dead ends.
+//
+// The left half is a grid of cells on the odd rows and columns, with walls in between. A sidewinder pass
+// carves it into a perfect maze, each cell row only joining itself and the row above, then random extra
+// walls are knocked out to make loops and every remaining dead end is opened sideways. Every tile written
+// on the left is mirrored onto the right. Cell rows are handled in bands of one tile chunk row each, with
+// a random stream per band, so bands are carved in parallel and the result depends only on the seed.
+// Generation is linear in the number of tiles.
+public class MazeGenerator {
+    public static final int MIN_COLS = 16;
+    public static final int MIN_ROWS = 15;
+    public static final double DEFAULT_DENSITY = 0.15;
+
+    // Cell rows per band: one cell row covers its own tile row and the wall row above it.
+    private static final int BAND_CELL_ROWS = TileBitSet.CHUNK_SIZE / 2;
+
+    private final int cols;
+    private final int rows;
+    private final double density;
+    private final long seed;
+    private final int cellRows;
+    private final int cellCols; // In the left half.
+    private final int bandCount;
+    private final TileBitSet walls;
+
+    private MazeGenerator(int cols, int rows, double density, long seed) {
+        this.cols = cols;
+        this.rows = rows;
+        this.density = density;
+        this.seed = seed;
+        this.cellRows = (rows - 1) / 2;
+        this.cellCols = cols / 4;
+        this.bandCount = (cellRows + BAND_CELL_ROWS - 1) / BAND_CELL_ROWS;
+        this.walls = new TileBitSet(rows, cols);
+    }
+
+    // Generates a maze on the common fork-join pool.
+    public static Maze generate(int cols, int rows, double density, long seed) {
+        return generate(cols, rows, density, seed, ForkJoinPool.commonPool());
+    }
+
+    // Generates a cols x rows maze. cols must be even so the halves mirror; density is the chance that
+    // each wall between two cells is knocked out on top of the spanning maze, from 0 (few loops) to 1
+    // (an open grid). The same arguments give the same maze on any pool.
+    public static Maze generate(int cols, int rows, double density, long seed, ForkJoinPool pool) {
+        if (cols < MIN_COLS || rows < MIN_ROWS || cols % 2 != 0) {
+            throw new IllegalArgumentException("Mazes need an even width of at least " + MIN_COLS
+                    + " and a height of at least " + MIN_ROWS + ": " + cols + "x" + rows);
+        }
+        if (density < 0 || density > 1) {
+            throw new IllegalArgumentException("Density must be between 0 and 1: " + density);
+        }
+        MazeGenerator generator = new MazeGenerator(cols, rows, density, seed);
+        return generator.build(pool);
+    }
+
+    private Maze build(ForkJoinPool pool) {
+        walls.setAll();
+        // Dead ends can only be found once the row below has carved its way up, hence two passes.
+        pool.invoke(new Bands(0, bandCount, false));
+        pool.invoke(new Bands(0, bandCount, true));
+        int[] house = carveHouse();
+        walls.compact();
+
+        TileBitSet powerPellets = new TileBitSet(rows, cols);
+        int lastRow = tileRow(cellRows - 1);
+        powerPellets.set(1, 1);
+        powerPellets.set(1, cols - 2);
+        powerPellets.set(lastRow, 1);
+        powerPellets.set(lastRow, cols - 2);
+
+        int middleRow = rows / 2;
+        int middleCol = cols / 2;
+        int[] spawns = {middleRow, middleCol - 1, middleRow, middleCol, middleRow + 1, middleCol - 1, middleRow + 1, middleCol};
+        int[] pelletRows = {house[0], house[2]};
+        try {
+            return Maze.create(cols, rows, walls, powerPellets, house, house[0], spawns, pelletRows);
+        } catch (IOException e) {
+            throw new IllegalStateException("Generated an invalid maze", e);
+        }
+    }
+
+    // Carves or unblocks one band of cell rows.
+    private void runBand(int band, boolean removeDeadEnds) {
+        int first = band * BAND_CELL_ROWS;
+        int last = Math.min(cellRows, first + BAND_CELL_ROWS) - 1;
+        if (removeDeadEnds) {
+            for (int row = first; row <= last; row++) {
+                removeDeadEnds(row);
+            }
+            return;
+        }
+        // Each band draws from its own stream, so bands can run in any order.
+        GameRandom random = new GameRandom(seed + band);
+        int tunnelRow = first + random.nextInt(last - first + 1);
+        for (int row = first; row <= last; row++) {
+            carveRow(row, random);
+            if (row == tunnelRow) {
+                open(tileRow(row), 0);
+            }
+        }
+    }
+
+    // Carves one cell row with the sidewinder algorithm: runs of cells joined sideways, each run joined to
+    // the row above through one random cell. The first and last rows and the outer column are left as
+    // straight corridors, which gives the maze its perimeter and keeps the outer cells out of dead ends.
+    private void carveRow(int row, GameRandom random) {
+        int r = tileRow(row);
+        for (int col = 0; col < cellCols; col++) {
+            open(r, tileCol(col));
+        }
+        if (row == 0 || row == cellRows - 1) {
+            for (int col = 0; col < cellCols; col++) {
+                openEast(row, col);
+            }
+        }
+        if (row > 0) {
+            int runStart = 0;
+            for (int col = 0; col < cellCols; col++) {
+                if (col == cellCols - 1 || random.nextInt(2) == 0) {
+                    openNorth(row, runStart + random.nextInt(col - runStart + 1));
+                    runStart = col + 1;
+                } else {
+                    openEast(row, col);
+                }
+            }
+            openNorth(row, 0);
+        }
+
+        // Loops.
+        for (int col = 0; col < cellCols; col++) {
+            if (random.nextDouble() < density) {
+                openEast(row, col);
+            }
+            if (row > 0 && random.nextDouble() < density) {
+                openNorth(row, col);
+            }
+        }
+    }
+
+    // Gives every cell of a row with a single way out a second one, sideways. This reads the wall row
+    // below, which the next row carved in the first pass, and only writes to this row's own tile row,
+    // so rows do not depend on each other's result.
+    private void removeDeadEnds(int row) {
+        int r = tileRow(row);
+        for (int col = 0; col < cellCols; col++) {
+            int c = tileCol(col);
+            boolean west = !walls.get(r, c - 1);
+            boolean east = !walls.get(r, c + 1);
+            int exits = (west ? 1 : 0) + (east ? 1 : 0)
+                    + (walls.get(r - 1, c) ? 0 : 1) + (walls.get(r + 1, c) ? 0 : 1);
+            if (exits > 1) {
+                continue;
+            }
+            // The outer column always has an exit up or down, so col 0 never needs to open westwards.
+            boolean preferEast = col == 0 || (col < cellCols - 1 && ((row + col) & 1) == 0);
+            if (preferEast ? !east : west) {
+                openEast(row, col);
+            } else {
+                openEast(row, col - 1);
+            }
+        }
+    }
+
+    // Clears a ring corridor around the middle of the maze and walls in the ghost house inside it.
+    // The ring meets whatever passages reach it, so the rest of the maze stays connected around the house.
+    // Returns the house as top row, left col, bottom row, right col.
+    private int[] carveHouse() {
+        int middleRow = rows / 2;
+        int middleCol = cols / 2;
+        for (int r = middleRow - 3; r <= middleRow + 3; r++) {
+            for (int c = middleCol - 5; c < middleCol; c++) {
+                boolean box = r >= middleRow - 2 && r <= middleRow + 2 && c >= middleCol - 4;
+                boolean boxWall = box && (r == middleRow - 2 || r == middleRow + 2 || c == middleCol - 4);
+                if (boxWall) {
+                    walls.set(r, c);
+                    walls.set(r, cols - 1 - c);
+                } else {
+                    open(r, c);
+                }
+            }
+        }
+        return new int[]{middleRow - 3, middleCol - 4, middleRow + 3, middleCol + 3};
+    }
+
+    // Removes the wall between a cell and its eastern neighbor; the last cell's neighbor is its mirror image.
+    private void openEast(int row, int col) {
+        int r = tileRow(row);
+        int end = col == cellCols - 1 ? cols / 2 : tileCol(col + 1);
+        for (int c = tileCol(col) + 1; c < end; c++) {
+            open(r, c);
+        }
+    }
+
+    // Removes the wall between a cell and the cell above it.
+    private void openNorth(int row, int col) {
+        open(tileRow(row) - 1, tileCol(col));
+    }
+
+    // Opens a left-half tile and its mirror image.
+    private void open(int r, int c) {
+        walls.clear(r, c);
+        walls.clear(r, cols - 1 - c);
+    }
+
+    private static int tileRow(int cellRow) {
+        return cellRow * 2 + 1;
+    }
+
+    private static int tileCol(int cellCol) {
+        return cellCol * 2 + 1;
+    }
+
+    // Splits a range of bands across the fork-join pool.
+    private class Bands extends RecursiveAction {
+        private final int from;
+        private final int to;
+        private final boolean removeDeadEnds;
+
+        Bands(int from, int to, boolean removeDeadEnds) {
+            this.from = from;
+            this.to = to;
+            this.removeDeadEnds = removeDeadEnds;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= 1) {
+                for (int band = from; band < to; band++) {
+                    runBand(band, removeDeadEnds);
+                }
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new Bands(from, mid, removeDeadEnds), new Bands(mid, to, removeDeadEnds));
+        }
+    }
+
+    // Usage: MazeGenerator [cols] [rows] [density] [threads] [mazes] [output file]
+    // Generates mazes back to back and reports the throughput; the last one is written out if a file is given.
+    public static void main(String[] args) throws IOException {
+        int cols = args.length > 0 ? Integer.parseInt(args[0]) : 4096;
+        int rows = args.length > 1 ? Integer.parseInt(args[1]) : 4096;
+        double density = args.length > 2 ? Double.parseDouble(args[2]) : DEFAULT_DENSITY;
+        int threads = args.length > 3 ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+        int mazes = args.length > 4 ? Integer.parseInt(args[4]) : 10;
+
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            Maze maze = generate(cols, rows, density, 0, pool); // Warm-up.
+            long start = System.nanoTime();
+            for (int i = 1; i <= mazes; i++) {
+                maze = generate(cols, rows, density, i, pool);
+            }
+            double seconds = (System.nanoTime() - start) / 1e9;
+            System.out.printf("%dx%d density=%.2f threads=%d: %d mazes in %.2f s, %.1f ms/maze, %.0f Mtiles/s%n",
+                    cols, rows, density, threads, mazes, seconds, seconds * 1000 / mazes,
+                    (double) cols * rows * mazes / seconds / 1e6);
+            System.out.printf("walls %d bytes, %d open tiles%n",
+                    maze.getWalls().getStorageBytes(), (long) cols * rows - maze.getWalls().cardinality());
+            if (args.length > 5) {
+                try (Writer out = new BufferedWriter(Files.newBufferedWriter(Paths.get(args[5]), StandardCharsets.UTF_8))) {
+                    maze.write(out);
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+}
@@ -0,0 +1,224 @@
+package pacman;
+
+import java.awt.Color;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.Transparency;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+
+// Draws the slowly changing parts of a maze from a cached image instead of one primitive per tile each frame.
+// The cached board holds the walls and the regular pellets; eaten pellets are erased from it tile by tile.
+// Power pellets and sprites are stamped from pre-rendered discs.
+// Boards too large to cache are drawn a tile at a time, but only the tiles inside the camera's view.
+public class MazeRenderer {
+    private static final Color WALL_COLOR = Color.BLUE;
+    private static final Color PELLET_COLOR = Color.WHITE;
+    private static final Color BACKGROUND_COLOR = Color.BLACK;
+    private static final AffineTransform IDENTITY = new AffineTransform();
+
+    public static final double PELLET_SIZE = 0.25;
+    public static final double POWER_PELLET_SIZE = 0.5;
+
+    // Largest board layer worth caching, in device pixels; bigger boards are drawn tile by tile.
+    private static final double MAX_LAYER_PIXELS = 4 * 1024 * 1024;
+
+    private final TileBitSet walls;
+    private final int rows;
+    private final int cols;
+
+    // The board pre-rendered at device resolution for the scale it was last drawn at.
+    private BufferedImage boardLayer;
+    private Graphics2D boardGraphics;
+    private int layerTileSize;
+    private double layerScaleX;
+    private double layerScaleY;
+
+    // The pellets currently painted on the board, and the engine's pellet version they reflect.
+    private final TileBitSet drawnPellets;
+    private int drawnPelletVersion;
+
+    private final DiscStamps discs = new DiscStamps();
+
+    // Constructs a renderer for the given maze.
+    public MazeRenderer(Maze maze) {
+        this.walls = maze.getWalls();
+        this.rows = maze.getHeight();
+        this.cols = maze.getWidth();
+        this.drawnPellets = new TileBitSet(rows, cols);
+    }
+
+    // Draws the walls and regular pellets with their top-left corner at (xOffset, yOffset) in game coordinates.
+    // pelletVersion must change whenever pellets changes so the board can catch up.
+    public void drawBoard(Graphics g, Camera camera, TileBitSet pellets, int pelletVersion, int xOffset, int yOffset, int tileSize) {
+        if (!(g instanceof Graphics2D)) {
+            drawVisibleTiles(g, camera, pellets, xOffset, yOffset, tileSize);
+            return;
+        }
+        Graphics2D g2d = (Graphics2D) g;
+        AffineTransform transform = g2d.getTransform();
+        if (transform.getShearX() != 0 || transform.getShearY() != 0) {
+            drawVisibleTiles(g, camera, pellets, xOffset, yOffset, tileSize); // Rotated views are not worth caching.
+            return;
+        }
+
+        double scaleX = transform.getScaleX();
+        double scaleY = transform.getScaleY();
+        if ((double) cols * tileSize * scaleX * rows * tileSize * scaleY > MAX_LAYER_PIXELS) {
+            drawVisibleTiles(g, camera, pellets, xOffset, yOffset, tileSize);
+            return;
+        }
+        // The layer only has to be rebuilt when the tile size or the panel scale changes.
+        if (boardLayer == null || tileSize != layerTileSize || scaleX != layerScaleX || scaleY != layerScaleY) {
+            buildBoardLayer(g2d, pellets, pelletVersion, tileSize, scaleX, scaleY);
+        } else if (pelletVersion != drawnPelletVersion) {
+            syncPellets(pellets, pelletVersion);
+        }
+
+        // Blit in device space so the cached pixels are copied 1:1 rather than resampled.
+        int deviceX = (int) Math.round(transform.getTranslateX() + xOffset * scaleX);
+        int deviceY = (int) Math.round(transform.getTranslateY() + yOffset * scaleY);
+        g2d.setTransform(IDENTITY);
+        g2d.drawImage(boardLayer, deviceX, deviceY, null);
+        g2d.setTransform(transform);
+    }
+
+    // Draws the power pellets in view, which are redrawn every frame.
+    public void drawPowerPellets(Graphics g, Camera camera, TileBitSet powerPellets, int xOffset, int yOffset, int tileSize) {
+        drawDiscs(g, camera, powerPellets, xOffset, yOffset, tileSize, POWER_PELLET_SIZE);
+    }
+
+    // Stamps a disc of the given fraction of a tile on every set tile in view.
+    private void drawDiscs(Graphics g, Camera camera, TileBitSet tiles, int xOffset, int yOffset, int tileSize, double sizeFraction) {
+        int firstRow = Math.max(0, camera.firstRow(yOffset, tileSize));
+        int lastRow = Math.min(rows - 1, camera.lastRow(yOffset, tileSize));
+        int firstCol = Math.max(0, camera.firstCol(xOffset, tileSize));
+        int lastCol = Math.min(cols - 1, camera.lastCol(xOffset, tileSize));
+        if (firstCol > lastCol) {
+            return;
+        }
+        int discSize = (int)(tileSize * sizeFraction);
+        int inset = (tileSize - discSize) / 2;
+        for (int r = firstRow; r <= lastRow; r++) {
+            for (int c = tiles.nextSetInRow(r, firstCol, lastCol); c >= 0;
+                    c = c < lastCol ? tiles.nextSetInRow(r, c + 1, lastCol) : -1) {
+                discs.draw(g, PELLET_COLOR.getRGB(), xOffset + c * tileSize + inset, yOffset + r * tileSize + inset, discSize);
+            }
+        }
+    }
+
+    // Draws a round sprite of the given 0xRRGGBB colour and size with its top-left corner at (x, y).
+    public void drawSprite(Graphics g, int rgb, int x, int y, int size) {
+        discs.draw(g, rgb, x, y, size);
+    }
+
+    // Draws a single pellet or big pellet at a given tile location.
+    public static void drawPellet(Graphics g, int xOffset, int yOffset, int tileSize, int row, int col, double sizeFraction) {
+        int pelletSize = (int)(tileSize * sizeFraction);
+        int pelletX = xOffset + col * tileSize + (tileSize - pelletSize) / 2;
+        int pelletY = yOffset + row * tileSize + (tileSize - pelletSize) / 2;
+        g.fillOval(pelletX, pelletY, pelletSize, pelletSize);
+    }
+
+    // Updates only the tiles whose pellet changed since the board was last drawn.
+    private void syncPellets(TileBitSet pellets, int pelletVersion) {
+        int tileSize = layerTileSize;
+        int pelletSize = (int)(tileSize * PELLET_SIZE);
+        // Erase a pellet's bounding box plus a pixel of antialiasing; pellets are far from any wall.
+        int inset = (tileSize - pelletSize) / 2 - 1;
+        for (int w = 0; w < pellets.wordCount(); w++) {
+            long drawn = drawnPellets.word(w);
+            long current = pellets.word(w);
+            long eaten = drawn & ~current;
+            long added = current & ~drawn;
+            if ((eaten | added) == 0) {
+                continue;
+            }
+            int row = pellets.wordRow(w);
+            int firstCol = pellets.wordCol(w);
+            while (eaten != 0) {
+                int col = firstCol + Long.numberOfTrailingZeros(eaten);
+                eaten &= eaten - 1;
+                boardGraphics.setColor(BACKGROUND_COLOR);
+                boardGraphics.fillRect(col * tileSize + inset, row * tileSize + inset,
+                        pelletSize + 2, pelletSize + 2);
+            }
+            while (added != 0) {
+                int col = firstCol + Long.numberOfTrailingZeros(added);
+                added &= added - 1;
+                boardGraphics.setColor(PELLET_COLOR);
+                drawPellet(boardGraphics, 0, 0, tileSize, row, col, PELLET_SIZE);
+            }
+        }
+        drawnPellets.copyFrom(pellets);
+        drawnPelletVersion = pelletVersion;
+    }
+
+    // Renders the walls and pellets into a new device-compatible image at the given scale.
+    private void buildBoardLayer(Graphics2D target, TileBitSet pellets, int pelletVersion, int tileSize, double scaleX, double scaleY) {
+        int width = Math.max(1, (int) Math.ceil(cols * tileSize * scaleX));
+        int height = Math.max(1, (int) Math.ceil(rows * tileSize * scaleY));
+        GraphicsConfiguration config = target.getDeviceConfiguration();
+        BufferedImage image = config != null
+                ? config.createCompatibleImage(width, height, Transparency.OPAQUE)
+                : new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+
+        // The graphics context is kept open so later pellet updates can paint straight into the layer.
+        Graphics2D ig = image.createGraphics();
+        ig.setRenderingHints(target.getRenderingHints()); // Match the panel's antialiasing settings.
+        ig.setColor(BACKGROUND_COLOR);
+        ig.fillRect(0, 0, width, height);
+        ig.scale(scaleX, scaleY);
+        drawTiles(ig, pellets, 0, 0, tileSize);
+
+        if (boardLayer != null) {
+            boardGraphics.dispose();
+            boardLayer.flush();
+        }
+        boardLayer = image;
+        boardGraphics = ig;
+        layerTileSize = tileSize;
+        layerScaleX = scaleX;
+        layerScaleY = scaleY;
+        drawnPellets.copyFrom(pellets);
+        drawnPelletVersion = pelletVersion;
+    }
+
+    // Draws the walls and pellets inside the camera's view, each row's runs of wall as single rectangles.
+    private void drawVisibleTiles(Graphics g, Camera camera, TileBitSet pellets, int xOffset, int yOffset, int tileSize) {
+        int firstRow = Math.max(0, camera.firstRow(yOffset, tileSize));
+        int lastRow = Math.min(rows - 1, camera.lastRow(yOffset, tileSize));
+        int firstCol = Math.max(0, camera.firstCol(xOffset, tileSize));
+        int lastCol = Math.min(cols - 1, camera.lastCol(xOffset, tileSize));
+        if (firstCol > lastCol) {
+            return;
+        }
+        g.setColor(WALL_COLOR);
+        for (int r = firstRow; r <= lastRow; r++) {
+            int c = walls.nextSetInRow(r, firstCol, lastCol);
+            while (c >= 0) {
+                int end = walls.nextClearInRow(r, c, lastCol);
+                if (end < 0) {
+                    end = lastCol + 1;
+                }
+                g.fillRect(xOffset + c * tileSize, yOffset + r * tileSize, (end - c) * tileSize, tileSize);
+                c = end < lastCol ? walls.nextSetInRow(r, end + 1, lastCol) : -1;
+            }
+        }
+        // Pellets are stamped like the power pellets, since fillOval would allocate every frame.
+        drawDiscs(g, camera, pellets, xOffset, yOffset, tileSize, PELLET_SIZE);
+    }
+
+    // Draws every wall and pellet one tile at a time, to build the board layer.
+    private void drawTiles(Graphics g, TileBitSet pellets, int xOffset, int yOffset, int tileSize) {
+        g.setColor(WALL_COLOR);
+        for (int i = walls.nextSetBit(0); i >= 0; i = walls.nextSetBit(i + 1)) {
+            g.fillRect(xOffset + (i % cols) * tileSize, yOffset + (i / cols) * tileSize, tileSize, tileSize);
+        }
+        g.setColor(PELLET_COLOR);
+        for (int i = pellets.nextSetBit(0); i >= 0; i = pellets.nextSetBit(i + 1)) {
+            drawPellet(g, xOffset, yOffset, tileSize, i / cols, i % cols, PELLET_SIZE);
+        }
+    }
+}
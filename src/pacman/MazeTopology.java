@@ -0,0 +1,132 @@
+package pacman;
+
+import java.util.Arrays;
+
+// The graph of a maze's open tiles: each open tile is a node, linked to its open neighbors (wrapping
+// horizontally through the tunnels). Built once per maze in time and memory linear in its size; path
+// distances come from a FlowField over this graph, or for small mazes from a PathTable of every pair.
+public final class MazeTopology {
+    // Direction indices, in the same order the ghost AI scores them: right, left, down, up.
+    public static final int RIGHT = 0;
+    public static final int LEFT = 1;
+    public static final int DOWN = 2;
+    public static final int UP = 3;
+    public static final int[] DIR_X = {1, -1, 0, 0};
+    public static final int[] DIR_Y = {0, 0, 1, -1};
+
+    // Distance value for tile pairs with no path between them.
+    public static final int UNREACHABLE = -1;
+
+    private final int rows;
+    private final int cols;
+    private final int nodeCount;
+    private final int[] nodeOfTile;   // tile index (row * cols + col) -> node, or -1 for walls
+    private final int[] tileOfNode;   // node -> tile index
+    private final int[] neighbors;    // node * 4 + dir -> neighboring node, or -1
+
+    // Numbers the open tiles and links each to its neighbors.
+    public MazeTopology(Maze maze) {
+        rows = maze.getHeight();
+        cols = maze.getWidth();
+
+        nodeOfTile = new int[rows * cols];
+        int count = 0;
+        for (int r = 0; r < rows; r++) {
+            for (int c = 0; c < cols; c++) {
+                nodeOfTile[r * cols + c] = maze.isWall(r, c) ? -1 : count++;
+            }
+        }
+        nodeCount = count;
+        tileOfNode = new int[nodeCount];
+        for (int t = 0; t < nodeOfTile.length; t++) {
+            if (nodeOfTile[t] >= 0) {
+                tileOfNode[nodeOfTile[t]] = t;
+            }
+        }
+
+        // Link each open tile to its open neighbors, wrapping horizontally through the tunnels.
+        neighbors = new int[nodeCount * 4];
+        for (int n = 0; n < nodeCount; n++) {
+            int r = tileOfNode[n] / cols;
+            int c = tileOfNode[n] % cols;
+            for (int d = 0; d < 4; d++) {
+                int nr = r + DIR_Y[d];
+                int nc = c + DIR_X[d];
+                if (nc < 0) nc = cols - 1;
+                if (nc >= cols) nc = 0;
+                neighbors[n * 4 + d] = (nr >= 0 && nr < rows) ? nodeOfTile[nr * cols + nc] : -1;
+            }
+        }
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    public int getCols() {
+        return cols;
+    }
+
+    public int getOpenTileCount() {
+        return nodeCount;
+    }
+
+    // Returns the node index of an open tile, or -1 for walls and out-of-bounds tiles.
+    public int nodeAt(int row, int col) {
+        if (row < 0 || row >= rows || col < 0 || col >= cols) {
+            return -1;
+        }
+        return nodeOfTile[row * cols + col];
+    }
+
+    // Returns the node reached by stepping one tile in a direction from a node, or -1 if blocked.
+    public int neighbor(int node, int dir) {
+        return neighbors[node * 4 + dir];
+    }
+
+    public int rowOf(int node) {
+        return tileOfNode[node] / cols;
+    }
+
+    public int colOf(int node) {
+        return tileOfNode[node] % cols;
+    }
+
+    // Returns the number of bytes held by the lookup tables.
+    public long getTableBytes() {
+        return 4L * nodeOfTile.length + 4L * tileOfNode.length + 4L * neighbors.length;
+    }
+
+    // Benchmarks construction time and memory cost for the standard maze.
+    public static void main(String[] args) {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        Maze maze = Maze.standard();
+
+        // Warm up so the timed builds run compiled code.
+        MazeTopology topology = null;
+        for (int i = 0; i < iterations; i++) {
+            topology = new MazeTopology(maze);
+        }
+
+        long[] samples = new long[iterations];
+        for (int i = 0; i < iterations; i++) {
+            long start = System.nanoTime();
+            topology = new MazeTopology(maze);
+            samples[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(samples);
+
+        Runtime runtime = Runtime.getRuntime();
+        System.gc();
+        long before = runtime.totalMemory() - runtime.freeMemory();
+        MazeTopology retained = new MazeTopology(maze);
+        System.gc();
+        long after = runtime.totalMemory() - runtime.freeMemory();
+
+        System.out.printf("maze %dx%d, %d open tiles%n", maze.getWidth(), maze.getHeight(), topology.getOpenTileCount());
+        System.out.printf("build time: min %.3f ms, median %.3f ms, max %.3f ms%n",
+                samples[0] / 1e6, samples[iterations / 2] / 1e6, samples[iterations - 1] / 1e6);
+        System.out.printf("table size: %d bytes, measured heap delta: %d bytes%n",
+                retained.getTableBytes(), after - before);
+    }
+}
@@ -1,7 +1,11 @@
+package pacman;
+
 import java.awt.Color;
 import java.awt.Graphics;
 
 public class Pacman extends Sprite {
+    public static final int COLOR = 0xFF0000; // Red, as 0xRRGGBB.
+
     private int speed;
 
     // Constructs a new Pacman object at a specified position and size.
@@ -19,8 +23,13 @@ public class Pacman extends Sprite {
 
     // Draws Pacman on the screen.
     public void draw(Graphics g) {
-        g.setColor(Color.RED);
-        g.fillOval(getX(), getY(), getWidth(), getHeight());
+        draw(g, 1.0);
+    }
+
+    // Draws Pacman interpolated between its last two tick positions.
+    public void draw(Graphics g, double alpha) {
+        g.setColor(new Color(COLOR));
+        g.fillOval(getRenderX(alpha), getRenderY(alpha), getWidth(), getHeight());
     }
 
     public int getSpeed() {
@@ -0,0 +1,143 @@
+package pacman;
+
+import java.util.Arrays;
+
+// Precomputed all-pairs shortest paths between the open tiles of a small maze.
+// Built once per maze (see Maze.getPathTable()); afterwards distance and next-hop queries between any two
+// tiles are two array lookups. The tables grow with the square of the open tile count, so they are only
+// built for mazes of up to MAX_NODES open tiles. Ghosts need distances to Pacman alone and use a FlowField,
+// which works at any size; this table is for callers that ask about arbitrary pairs.
+public final class PathTable {
+    // Largest open tile count that gets tables: 4096 nodes cost 48 MB.
+    public static final int MAX_NODES = 4096;
+
+    private final MazeTopology topology;
+    private final int nodeCount;
+    private final short[] distances;  // from * nodeCount + to -> steps, or UNREACHABLE
+    private final byte[] nextHops;    // from * nodeCount + to -> first direction to take, or -1
+
+    // Builds the tables with one breadth-first search per open tile. Throws IllegalArgumentException if
+    // the maze has more than MAX_NODES open tiles.
+    public PathTable(MazeTopology topology) {
+        this.topology = topology;
+        nodeCount = topology.getOpenTileCount();
+        if (nodeCount > MAX_NODES) {
+            throw new IllegalArgumentException(nodeCount + " open tiles is too many for a path table");
+        }
+        distances = new short[nodeCount * nodeCount];
+        nextHops = new byte[nodeCount * nodeCount];
+        Arrays.fill(distances, (short) MazeTopology.UNREACHABLE);
+        Arrays.fill(nextHops, (byte) -1);
+
+        // BFS from every source; the first step of each path is inherited from the parent node.
+        int[] queue = new int[nodeCount];
+        for (int source = 0; source < nodeCount; source++) {
+            int base = source * nodeCount;
+            int head = 0;
+            int tail = 0;
+            queue[tail++] = source;
+            distances[base + source] = 0;
+            while (head < tail) {
+                int node = queue[head++];
+                short nextDistance = (short) (distances[base + node] + 1);
+                for (int d = 0; d < 4; d++) {
+                    int next = topology.neighbor(node, d);
+                    if (next >= 0 && distances[base + next] == MazeTopology.UNREACHABLE) {
+                        distances[base + next] = nextDistance;
+                        nextHops[base + next] = node == source ? (byte) d : nextHops[base + node];
+                        queue[tail++] = next;
+                    }
+                }
+            }
+        }
+    }
+
+    public MazeTopology getTopology() {
+        return topology;
+    }
+
+    // Returns the shortest path length in tiles between two nodes, or UNREACHABLE.
+    public int distance(int from, int to) {
+        return distances[from * nodeCount + to];
+    }
+
+    // Returns the shortest path length between two tiles, or UNREACHABLE if either is a wall.
+    public int distance(int fromRow, int fromCol, int toRow, int toCol) {
+        int from = topology.nodeAt(fromRow, fromCol);
+        int to = topology.nodeAt(toRow, toCol);
+        if (from < 0 || to < 0) {
+            return MazeTopology.UNREACHABLE;
+        }
+        return distance(from, to);
+    }
+
+    // Returns the direction of the first step on a shortest path between two nodes, or -1 if none.
+    public int nextDirection(int from, int to) {
+        return nextHops[from * nodeCount + to];
+    }
+
+    // Returns the first-step direction between two tiles, or -1 if there is no path.
+    public int nextDirection(int fromRow, int fromCol, int toRow, int toCol) {
+        int from = topology.nodeAt(fromRow, fromCol);
+        int to = topology.nodeAt(toRow, toCol);
+        if (from < 0 || to < 0) {
+            return -1;
+        }
+        return nextDirection(from, to);
+    }
+
+    // Returns the number of bytes held by the tables.
+    public long getTableBytes() {
+        return 2L * distances.length + nextHops.length;
+    }
+
+    // Benchmarks construction time and memory cost for the standard maze, and checks the table against a
+    // FlowField from every source.
+    public static void main(String[] args) {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        Maze maze = Maze.standard();
+        MazeTopology topology = maze.getTopology();
+
+        // Warm up so the timed builds run compiled code.
+        PathTable table = null;
+        for (int i = 0; i < iterations; i++) {
+            table = new PathTable(topology);
+        }
+
+        long[] samples = new long[iterations];
+        for (int i = 0; i < iterations; i++) {
+            long start = System.nanoTime();
+            table = new PathTable(topology);
+            samples[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(samples);
+
+        Runtime runtime = Runtime.getRuntime();
+        System.gc();
+        long before = runtime.totalMemory() - runtime.freeMemory();
+        PathTable retained = new PathTable(topology);
+        System.gc();
+        long after = runtime.totalMemory() - runtime.freeMemory();
+
+        FlowField field = new FlowField(topology);
+        int mismatches = 0;
+        for (int source = 0; source < table.nodeCount; source++) {
+            field.setSource(source);
+            for (int node = 0; node < table.nodeCount; node++) {
+                if (field.distance(node) != table.distance(node, source)) {
+                    mismatches++;
+                }
+            }
+        }
+
+        System.out.printf("maze %dx%d, %d open tiles%n", maze.getWidth(), maze.getHeight(), topology.getOpenTileCount());
+        System.out.printf("build time: min %.3f ms, median %.3f ms, max %.3f ms%n",
+                samples[0] / 1e6, samples[iterations / 2] / 1e6, samples[iterations - 1] / 1e6);
+        System.out.printf("table size: %d bytes, measured heap delta: %d bytes%n",
+                retained.getTableBytes(), after - before);
+        System.out.printf("distances differing from a flow field: %d%n", mismatches);
+        if (mismatches > 0) {
+            System.exit(1);
+        }
+    }
+}
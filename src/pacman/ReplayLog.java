@@ -0,0 +1,254 @@
+package pacman;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+// A recorded game: what is needed to rebuild the engine exactly (seed, ghost count, tile geometry and a
+// checksum of the maze) plus the ticks on which Pacman's input changed. The input holds between changes,
+// so a log costs a couple of bytes per key press however long the game runs.
+//
+// Encoded as the magic bytes "PMR", a version byte, the header as varints, then one (ticks since the
+// previous change, input) pair per change and a final (ticks to the end, END) pair. Tick deltas are
+// unsigned LEB128 varints, signed header fields are zigzag-encoded first, and inputs are single bytes
+// as produced by GameEngine.encodeInput.
+public final class ReplayLog {
+    private static final byte[] MAGIC = {'P', 'M', 'R'};
+    // Bumped whenever the simulation changes, as older logs would no longer play out the same.
+    private static final int VERSION = 2;
+    private static final int END = 0xFF;
+
+    private final long seed;
+    private final int ghostCount;
+    private final int tileSize;
+    private final int xOffset;
+    private final int yOffset;
+    private final int mazeWidth;
+    private final int mazeHeight;
+    private final int mazeChecksum;
+
+    // Encoded (tick delta, input) pairs, without the end marker.
+    private byte[] changes = new byte[64];
+    private int length;
+    private int changeCount;
+    private long lastTick;
+    private long endTick = -1;
+
+    // Constructs an empty log for a game starting with the given engine setup.
+    public ReplayLog(long seed, int ghostCount, int tileSize, int xOffset, int yOffset, Maze maze) {
+        this(seed, ghostCount, tileSize, xOffset, yOffset, maze.getWidth(), maze.getHeight(), maze.getChecksum());
+    }
+
+    private ReplayLog(long seed, int ghostCount, int tileSize, int xOffset, int yOffset,
+                      int mazeWidth, int mazeHeight, int mazeChecksum) {
+        this.seed = seed;
+        this.ghostCount = ghostCount;
+        this.tileSize = tileSize;
+        this.xOffset = xOffset;
+        this.yOffset = yOffset;
+        this.mazeWidth = mazeWidth;
+        this.mazeHeight = mazeHeight;
+        this.mazeChecksum = mazeChecksum;
+    }
+
+    // Records that the input became input on the given tick. Ticks must not go backwards.
+    public void record(long tick, int input) {
+        if (isFinished()) {
+            throw new IllegalStateException("Replay already finished at tick " + endTick);
+        }
+        if (tick < lastTick) {
+            throw new IllegalArgumentException("Tick " + tick + " is before " + lastTick);
+        }
+        ensureCapacity(11);
+        length = writeVarLong(changes, length, tick - lastTick);
+        changes[length++] = (byte) input;
+        lastTick = tick;
+        changeCount++;
+    }
+
+    // Ends the log after the given number of ticks.
+    public void finish(long endTick) {
+        if (endTick < lastTick) {
+            throw new IllegalArgumentException("End tick " + endTick + " is before " + lastTick);
+        }
+        this.endTick = endTick;
+    }
+
+    public boolean isFinished() {
+        return endTick >= 0;
+    }
+
+    // Returns the number of ticks the recorded game ran for, or -1 if it is still being recorded.
+    public long getEndTick() {
+        return endTick;
+    }
+
+    public int getChangeCount() {
+        return changeCount;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public int getGhostCount() {
+        return ghostCount;
+    }
+
+    // Builds an engine in the recorded starting state on the given maze, driven by this log's input.
+    public GameEngine createEngine(Maze maze) {
+        if (maze.getWidth() != mazeWidth || maze.getHeight() != mazeHeight || maze.getChecksum() != mazeChecksum) {
+            throw new IllegalArgumentException("Replay was recorded on a different " + mazeWidth + "x" + mazeHeight + " maze");
+        }
+        GameEngine engine = new GameEngine(maze, tileSize, xOffset, yOffset, seed, ghostCount);
+        engine.setReplay(new ReplayPlayer(this));
+        return engine;
+    }
+
+    // Decodes the recorded changes into parallel arrays of ticks and inputs.
+    void decodeChanges(long[] ticks, int[] inputs) {
+        int position = 0;
+        long tick = 0;
+        for (int i = 0; i < changeCount; i++) {
+            long delta = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = changes[position++];
+                delta |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            tick += delta;
+            ticks[i] = tick;
+            inputs[i] = changes[position++] & 0xFF;
+        }
+    }
+
+    // Returns the encoded log. The log must be finished.
+    public byte[] toByteArray() {
+        if (!isFinished()) {
+            throw new IllegalStateException("Replay is still being recorded");
+        }
+        byte[] out = new byte[MAGIC.length + 1 + 8 * 10 + length + 11];
+        System.arraycopy(MAGIC, 0, out, 0, MAGIC.length);
+        int position = MAGIC.length;
+        out[position++] = VERSION;
+        position = writeVarLong(out, position, zigzag(seed));
+        position = writeVarLong(out, position, ghostCount);
+        position = writeVarLong(out, position, tileSize);
+        position = writeVarLong(out, position, zigzag(xOffset));
+        position = writeVarLong(out, position, zigzag(yOffset));
+        position = writeVarLong(out, position, mazeWidth);
+        position = writeVarLong(out, position, mazeHeight);
+        position = writeVarLong(out, position, mazeChecksum & 0xFFFFFFFFL);
+        System.arraycopy(changes, 0, out, position, length);
+        position += length;
+        position = writeVarLong(out, position, endTick - lastTick);
+        out[position++] = (byte) END;
+        return Arrays.copyOf(out, position);
+    }
+
+    public void write(OutputStream out) throws IOException {
+        out.write(toByteArray());
+    }
+
+    // Reads a finished log. Malformed input fails with an IOException.
+    public static ReplayLog read(InputStream in) throws IOException {
+        return parse(in.readAllBytes());
+    }
+
+    public static ReplayLog parse(byte[] data) throws IOException {
+        Decoder decoder = new Decoder(data);
+        for (byte b : MAGIC) {
+            if (decoder.readByte() != b) {
+                throw new IOException("Not a replay log");
+            }
+        }
+        int version = decoder.readByte();
+        if (version != VERSION) {
+            throw new IOException("Unsupported replay version " + version);
+        }
+        long seed = unzigzag(decoder.readVarLong());
+        int ghostCount = decoder.readVarInt();
+        int tileSize = decoder.readVarInt();
+        int xOffset = (int) unzigzag(decoder.readVarLong());
+        int yOffset = (int) unzigzag(decoder.readVarLong());
+        int mazeWidth = decoder.readVarInt();
+        int mazeHeight = decoder.readVarInt();
+        int mazeChecksum = (int) decoder.readVarLong();
+        ReplayLog log = new ReplayLog(seed, ghostCount, tileSize, xOffset, yOffset, mazeWidth, mazeHeight, mazeChecksum);
+
+        long tick = 0;
+        while (true) {
+            tick += decoder.readVarLong();
+            int input = decoder.readByte() & 0xFF;
+            if (input == END) {
+                log.finish(tick);
+                return log;
+            }
+            log.record(tick, input);
+        }
+    }
+
+    private void ensureCapacity(int extra) {
+        if (length + extra > changes.length) {
+            changes = Arrays.copyOf(changes, Math.max(changes.length * 2, length + extra));
+        }
+    }
+
+    // Writes value as an unsigned LEB128 varint at position and returns the position after it.
+    private static int writeVarLong(byte[] out, int position, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out[position++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out[position++] = (byte) value;
+        return position;
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    // Reads varints from an encoded log, failing cleanly on truncated input.
+    private static final class Decoder {
+        private final byte[] data;
+        private int position;
+
+        Decoder(byte[] data) {
+            this.data = data;
+        }
+
+        byte readByte() throws IOException {
+            if (position >= data.length) {
+                throw new IOException("Replay log is truncated");
+            }
+            return data[position++];
+        }
+
+        long readVarLong() throws IOException {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                byte b = readByte();
+                value |= (long) (b & 0x7F) << shift;
+                if (b >= 0) {
+                    return value;
+                }
+            }
+            throw new IOException("Malformed varint in replay log");
+        }
+
+        int readVarInt() throws IOException {
+            long value = readVarLong();
+            if (value > Integer.MAX_VALUE) {
+                throw new IOException("Value out of range in replay log: " + value);
+            }
+            return (int) value;
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package pacman;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+// Feeds a recorded game's input back into an engine, one tick at a time.
+// Headless replays run the engine flat out, which is how bug reports are reproduced and engine
+// optimizations are checked against recorded games: the same log must always end in the same state.
+public class ReplayPlayer {
+    private final long[] ticks;
+    private final int[] inputs;
+    private final long endTick;
+    private int next;
+    private int current;
+
+    // Constructs a player for a finished log.
+    public ReplayPlayer(ReplayLog log) {
+        if (!log.isFinished()) {
+            throw new IllegalArgumentException("Replay is still being recorded");
+        }
+        ticks = new long[log.getChangeCount()];
+        inputs = new int[log.getChangeCount()];
+        log.decodeChanges(ticks, inputs);
+        endTick = log.getEndTick();
+    }
+
+    // Returns the input in effect on a tick. Ticks must be asked for in increasing order.
+    public int inputAt(long tick) {
+        while (next < ticks.length && ticks[next] <= tick) {
+            current = inputs[next++];
+        }
+        return current;
+    }
+
+    // Returns the number of ticks in the recorded game.
+    public long getEndTick() {
+        return endTick;
+    }
+
+    // Replays a whole log without rendering and returns the engine in its final state.
+    public static GameEngine run(ReplayLog log, Maze maze) {
+        GameEngine engine = log.createEngine(maze);
+        for (long tick = engine.getTickCount(); tick < log.getEndTick(); tick++) {
+            engine.update();
+        }
+        return engine;
+    }
+
+    // Returns a hash of the state a replay should reproduce: score, tick, Pacman and every ghost.
+    public static long stateHash(GameEngine engine) {
+        long hash = engine.getTickCount() * 31 + engine.getScore();
+        hash = hash * 31 + (engine.isGameOver() ? 1 : engine.isGameWon() ? 2 : 0);
+        hash = hash * 31 + engine.getPacman().getX();
+        hash = hash * 31 + engine.getPacman().getY();
+        GhostPool pool = engine.getGhostPool();
+        for (int g = 0; g < pool.size(); g++) {
+            hash = hash * 31 + pool.getX(g);
+            hash = hash * 31 + pool.getY(g);
+        }
+        return hash;
+    }
+
+    // Usage: ReplayPlayer <replay file> [maze file] [repeats]
+    // Replays a log headless, prints the final state, and reports how fast the replays ran.
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage: ReplayPlayer <replay file> [maze file] [repeats]");
+            System.exit(2);
+        }
+        ReplayLog log;
+        try (InputStream in = Files.newInputStream(Paths.get(args[0]))) {
+            log = ReplayLog.read(in);
+        }
+        Maze maze = args.length > 1 && !args[1].isEmpty() ? Maze.load(Paths.get(args[1])) : Maze.standard();
+        int repeats = args.length > 2 ? Integer.parseInt(args[2]) : 1;
+
+        GameEngine engine = null;
+        long start = System.nanoTime();
+        for (int i = 0; i < repeats; i++) {
+            engine = run(log, maze);
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("seed=%d ticks=%d changes=%d score=%d won=%b over=%b state=%016x%n",
+                log.getSeed(), engine.getTickCount(), log.getChangeCount(), engine.getScore(),
+                engine.isGameWon(), engine.isGameOver(), stateHash(engine));
+        System.out.printf("%d replays in %.2f s, %.0f ticks/s%n", repeats, seconds, log.getEndTick() * repeats / seconds);
+    }
+}
@@ -0,0 +1,247 @@
+package pacman;
+
+import java.nio.ByteBuffer;
+
+// Streams one game to any number of spectators. Each tick the game's thread publishes what changed into a
+// DeltaRing, and every spectator's Reader follows the ring on its own thread, applying the records to its
+// own StateMirror. Publishing never waits for a reader: one that falls a whole ring behind is lapped and
+// resyncs from the newest keyframe.
+//
+// Records are StateEncoder frames. A keyframe is a FULL frame, written at the start, every
+// KEYFRAME_INTERVAL ticks, after the game jumps (a reset or restore), and whenever a delta would be no
+// smaller. Every other tick is a DELTA relative to the tick before, big-endian with varints (see
+// StateEncoder.putVarint()): the length of the rest as an int, the type byte and the tick (int), then
+//   the change in score (signed varint), the status byte, the power timer (varint: 0 when it just counted
+//   down by one, as it does on most ticks while it runs, otherwise the new value + 1), Pacman's x and y
+//   offsets (signed varints), the number of ghosts that moved or changed flags (varint), and for each
+//   the gap to its index from the last one's + 1 (varint), its x and y offsets (signed varints) and flags
+//   byte, then the number of pellets eaten or restored (varint) and each tile as its offset from the one
+//   before (signed varints, the first from tile 0), and the same for power pellets.
+// A tick of the standard game costs about thirty bytes, keyframes included, against three hundred for a
+// FULL frame.
+public final class SpectatorFeed {
+    public static final int KEYFRAME_INTERVAL = 150; // Ticks between keyframes; 2.5 seconds.
+
+    private static final int MAX_VARINT = 5;
+    private static final int DELTA_FIXED_SIZE = 4 + 1 + 4 + 1 + MAX_VARINT * 7;
+    private static final int MAX_GHOST_DELTA = MAX_VARINT * 3 + 1;
+    private static final int TYPICAL_GHOST_DELTA = 4;
+
+    private final GameEngine engine;
+    private final DeltaRing ring;
+    private final StateEncoder keyframes;
+    private final int frameSize;
+
+    // What the last record showed; owned by the publishing thread.
+    private boolean started;
+    private int tick;
+    private int score;
+    private int powerTimer;
+    private int pacmanX;
+    private int pacmanY;
+    private final int[] ghostX;
+    private final int[] ghostY;
+    private final byte[] ghostFlags;
+    private final TileBitSet shownPellets;
+    private final TileBitSet shownBigPellets;
+    private int shownVersion;
+    private int sinceKeyframe;     // Ticks since the last keyframe.
+    private int bytesSinceKeyframe;
+
+    // Constructs a feed of an engine's game, with a ring big enough for a couple of keyframe intervals.
+    public SpectatorFeed(GameEngine engine) {
+        this(engine, 2 * (StateEncoder.maxFrameSize(engine)
+                + KEYFRAME_INTERVAL * (24 + TYPICAL_GHOST_DELTA * engine.getGhostPool().size())));
+    }
+
+    // Constructs a feed of an engine's game with a ring of at least capacity bytes; it is enlarged if it
+    // could not hold four keyframes.
+    public SpectatorFeed(GameEngine engine, int capacity) {
+        this.engine = engine;
+        this.frameSize = StateEncoder.maxFrameSize(engine);
+        this.ring = new DeltaRing(Math.max(capacity, 4 * (frameSize + 16)), StateEncoder.FULL);
+        this.keyframes = new StateEncoder(engine);
+        int ghosts = engine.getGhostPool().size();
+        ghostX = new int[ghosts];
+        ghostY = new int[ghosts];
+        ghostFlags = new byte[ghosts];
+        TileBitSet pellets = engine.getPellets();
+        shownPellets = new TileBitSet(pellets.getRows(), pellets.getCols());
+        shownBigPellets = new TileBitSet(pellets.getRows(), pellets.getCols());
+    }
+
+    // Returns a new spectator, which starts from the newest keyframe. Any thread may call this.
+    public Reader newReader() {
+        return new Reader();
+    }
+
+    // Publishes the game's current state; call once a tick, from the thread stepping the game. Never waits
+    // for readers, and allocates nothing.
+    public void publish() {
+        GhostPool pool = engine.getGhostPool();
+        int now = (int) engine.getTickCount();
+        boolean pelletsChanged = engine.getPelletVersion() != shownVersion;
+        int changed = 0;
+        int changedBig = 0;
+        if (started && pelletsChanged) {
+            changed = StateEncoder.countChanges(engine.getPellets(), shownPellets);
+            changedBig = StateEncoder.countChanges(engine.getBigPellets(), shownBigPellets);
+        }
+        int deltaBound = DELTA_FIXED_SIZE + MAX_GHOST_DELTA * pool.size() + MAX_VARINT * (changed + changedBig);
+        boolean keyframe = !started || now != tick + 1 || sinceKeyframe >= KEYFRAME_INTERVAL
+                || deltaBound >= frameSize || bytesSinceKeyframe > ring.getCapacity() / 2;
+        if (keyframe) {
+            writeKeyframe(pool);
+        } else {
+            writeDelta(pool, deltaBound, changed, changedBig);
+        }
+        tick = now;
+        score = engine.getScore();
+        powerTimer = engine.getPowerTimer();
+        pacmanX = engine.getPacman().getX();
+        pacmanY = engine.getPacman().getY();
+        if (pelletsChanged || keyframe) {
+            shownPellets.copyFrom(engine.getPellets());
+            shownBigPellets.copyFrom(engine.getBigPellets());
+            shownVersion = engine.getPelletVersion();
+        }
+    }
+
+    private void writeKeyframe(GhostPool pool) {
+        ByteBuffer out = ring.claim(frameSize);
+        keyframes.invalidate();
+        keyframes.write(engine, out);
+        ring.commit(StateEncoder.FULL);
+        for (int g = 0, n = pool.size(); g < n; g++) {
+            ghostX[g] = pool.getX(g);
+            ghostY[g] = pool.getY(g);
+            ghostFlags[g] = (byte) StateEncoder.ghostFlags(pool, g);
+        }
+        started = true;
+        sinceKeyframe = 0;
+        bytesSinceKeyframe = 0;
+    }
+
+    private void writeDelta(GhostPool pool, int deltaBound, int changed, int changedBig) {
+        ByteBuffer out = ring.claim(deltaBound);
+        int start = out.position();
+        int timer = engine.getPowerTimer();
+        out.putInt(0).put(StateEncoder.DELTA).putInt((int) engine.getTickCount());
+        StateEncoder.putSignedVarint(out, engine.getScore() - score);
+        out.put((byte) StateEncoder.statusOf(engine));
+        StateEncoder.putVarint(out, timer == Math.max(0, powerTimer - 1) ? 0 : timer + 1);
+        StateEncoder.putSignedVarint(out, engine.getPacman().getX() - pacmanX);
+        StateEncoder.putSignedVarint(out, engine.getPacman().getY() - pacmanY);
+        int n = pool.size();
+        int moved = 0;
+        for (int g = 0; g < n; g++) {
+            if (pool.getX(g) != ghostX[g] || pool.getY(g) != ghostY[g] || StateEncoder.ghostFlags(pool, g) != ghostFlags[g]) {
+                moved++;
+            }
+        }
+        StateEncoder.putVarint(out, moved);
+        for (int g = 0, last = -1; g < n && moved > 0; g++) {
+            int x = pool.getX(g);
+            int y = pool.getY(g);
+            int flags = StateEncoder.ghostFlags(pool, g);
+            if (x == ghostX[g] && y == ghostY[g] && flags == ghostFlags[g]) {
+                continue;
+            }
+            StateEncoder.putVarint(out, g - last - 1);
+            StateEncoder.putSignedVarint(out, x - ghostX[g]);
+            StateEncoder.putSignedVarint(out, y - ghostY[g]);
+            out.put((byte) flags);
+            ghostX[g] = x;
+            ghostY[g] = y;
+            ghostFlags[g] = (byte) flags;
+            last = g;
+            moved--;
+        }
+        writeTiles(engine.getPellets(), shownPellets, out, changed);
+        writeTiles(engine.getBigPellets(), shownBigPellets, out, changedBig);
+        out.putInt(start, out.position() - start - 4);
+        int length = out.position() - start;
+        ring.commit(StateEncoder.DELTA);
+        sinceKeyframe++;
+        bytesSinceKeyframe += length;
+    }
+
+    // Writes the count of tiles whose bit differs between the two sets, then each tile's offset from the last.
+    private static void writeTiles(TileBitSet current, TileBitSet shown, ByteBuffer out, int count) {
+        StateEncoder.putVarint(out, count);
+        int cols = current.getCols();
+        int last = 0;
+        for (int w = 0, n = current.wordCount(); w < n && count > 0; w++) {
+            long changed = current.word(w) ^ shown.word(w);
+            if (changed == 0) {
+                continue;
+            }
+            int first = current.wordRow(w) * cols + current.wordCol(w);
+            while (changed != 0) {
+                int tile = first + Long.numberOfTrailingZeros(changed);
+                StateEncoder.putSignedVarint(out, tile - last);
+                last = tile;
+                changed &= changed - 1;
+                count--;
+            }
+        }
+    }
+
+    // One spectator: a cursor into the feed and the game as it has seen it. Belongs to one thread.
+    public final class Reader {
+        private final DeltaRing.Reader cursor = ring.newReader();
+        private final ByteBuffer record = ByteBuffer.allocate(ring.getMaxRecordLength());
+        private final StateMirror mirror = new StateMirror();
+        private boolean synced;
+        private long resyncs;
+
+        private Reader() {
+        }
+
+        // Applies every record published since the last poll, and returns how many were applied. Deltas
+        // are skipped until the reader has a keyframe to apply them to. Never blocks, and allocates nothing.
+        public int poll() {
+            int applied = 0;
+            while (true) {
+                int type = cursor.read(record);
+                if (type == DeltaRing.NONE) {
+                    return applied;
+                }
+                if (type == DeltaRing.LAPPED) {
+                    if (synced) {
+                        synced = false;
+                        resyncs++;
+                    }
+                } else if (type == StateEncoder.FULL) {
+                    mirror.apply(record);
+                    synced = true;
+                    applied++;
+                } else if (synced) {
+                    mirror.apply(record);
+                    applied++;
+                }
+            }
+        }
+
+        // Returns the game as of the last record applied; current only while isSynced().
+        public StateMirror getMirror() {
+            return mirror;
+        }
+
+        // Returns true while the mirror follows the game, that is, from the first keyframe applied until
+        // the reader is lapped.
+        public boolean isSynced() {
+            return synced;
+        }
+
+        // Returns how many times the reader lost track of the game and had to wait for a keyframe.
+        public long getResyncs() {
+            return resyncs;
+        }
+
+        // Returns how many bytes behind the feed the reader is.
+        public long getLag() {
+            return cursor.getLag();
+        }
+    }
+}
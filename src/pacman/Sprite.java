@@ -1,3 +1,5 @@
+package pacman;
+
 import java.awt.Graphics;
 
 public class Sprite {
@@ -7,6 +9,8 @@ public class Sprite {
     private int dy;
     private int width;
     private int height;
+    private int prevX;
+    private int prevY;
 
     // Constructs a new Sprite with specified position and dimensions.
     public Sprite(int x, int y, int width, int height) {
@@ -16,6 +20,33 @@ public class Sprite {
         this.height = height;
         this.dx = 0;
         this.dy = 0;
+        this.prevX = x;
+        this.prevY = y;
+    }
+
+    // Remembers the current position as where the next tick starts from, for interpolated rendering.
+    public void savePosition() {
+        prevX = x;
+        prevY = y;
+    }
+
+    // Returns the x position blended between the previous and current tick (alpha in [0, 1]).
+    public int getRenderX(double alpha) {
+        return interpolate(prevX, x, width, alpha);
+    }
+
+    // Returns the y position blended between the previous and current tick (alpha in [0, 1]).
+    public int getRenderY(double alpha) {
+        return interpolate(prevY, y, height, alpha);
+    }
+
+    // Blends two positions, snapping instead when the sprite jumped (tunnel wrap, respawn).
+    protected static int interpolate(int from, int to, int size, double alpha) {
+        int delta = to - from;
+        if (delta > size || delta < -size) {
+            return to;
+        }
+        return from + (int) Math.round(delta * alpha);
     }
 
     // Updates the sprite's position based on its current velocity.
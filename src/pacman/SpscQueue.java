@@ -0,0 +1,70 @@
+package pacman;
+
+// A bounded, lock-free queue of non-negative longs between exactly one producer thread and one consumer
+// thread. Neither side ever waits for the other: offer() fails when the queue is full and poll() returns
+// EMPTY when there is nothing to take. Allocates nothing after construction.
+//
+// Each side owns one counter and only reads the other's; it keeps a cached copy of the other's counter and
+// re-reads the volatile only when the copy says the queue is full (or empty).
+public final class SpscQueue {
+    public static final long EMPTY = -1;
+
+    private final long[] slots;
+    private final int mask;
+    private volatile long head;  // Next slot to take; written by the consumer.
+    private volatile long tail;  // Next slot to fill; written by the producer.
+    private long cachedHead;     // Producer's copy of head.
+    private long cachedTail;     // Consumer's copy of tail.
+
+    // Constructs a queue holding at least capacity values (rounded up to a power of two).
+    public SpscQueue(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        slots = new long[size];
+        mask = size - 1;
+    }
+
+    // Returns how many values the queue can hold.
+    public int getCapacity() {
+        return slots.length;
+    }
+
+    // Adds a value (>= 0) and returns true, or returns false if the queue is full. Producer only.
+    public boolean offer(long value) {
+        return offer(value, 0);
+    }
+
+    // Adds a value (>= 0) if at least reserve slots stay free after it, and returns whether it did. Keeps
+    // room for values that must not be dropped. Producer only.
+    public boolean offer(long value, int reserve) {
+        long position = tail;
+        long limit = position - slots.length + 1 + reserve;
+        if (cachedHead < limit) {
+            cachedHead = head;
+            if (cachedHead < limit) {
+                return false;
+            }
+        }
+        slots[(int) position & mask] = value;
+        tail = position + 1; // Volatile write: publishes the slot.
+        return true;
+    }
+
+    // Removes and returns the oldest value, or returns EMPTY. Consumer only.
+    public long poll() {
+        long position = head;
+        if (position >= cachedTail) {
+            cachedTail = tail;
+            if (position >= cachedTail) {
+                return EMPTY;
+            }
+        }
+        long value = slots[(int) position & mask];
+        head = position + 1; // Volatile write: hands the slot back.
+        return value;
+    }
+
+    // Returns the number of values waiting; a snapshot that may be stale by the time it is used.
+    public int size() {
+        return (int) Math.max(0, tail - head);
+    }
+}
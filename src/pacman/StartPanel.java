@@ -0,0 +1,46 @@
+package pacman;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.GridBagLayout;
+import java.awt.event.ActionListener;
+import javax.swing.BorderFactory;
+import javax.swing.Box;
+import javax.swing.BoxLayout;
+import javax.swing.JButton;
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+
+// The screen shown before a game and between games: the title and a Play button.
+public class StartPanel extends JPanel {
+    private final JButton playButton = new JButton("Play");
+
+    // Constructs the start screen, centred on a black background.
+    public StartPanel() {
+        setLayout(new GridBagLayout());
+        setBackground(Color.BLACK);
+
+        JLabel title = new JLabel("PAC-MAN");
+        title.setFont(new Font("Arial", Font.BOLD, 64));
+        title.setForeground(Color.YELLOW);
+        title.setAlignmentX(CENTER_ALIGNMENT);
+
+        playButton.setFont(new Font("Arial", Font.BOLD, 24));
+        playButton.setFocusPainted(false);
+        playButton.setBorder(BorderFactory.createEmptyBorder(8, 32, 8, 32));
+        playButton.setAlignmentX(CENTER_ALIGNMENT);
+
+        JPanel column = new JPanel();
+        column.setLayout(new BoxLayout(column, BoxLayout.Y_AXIS));
+        column.setOpaque(false);
+        column.add(title);
+        column.add(Box.createVerticalStrut(40));
+        column.add(playButton);
+        add(column);
+    }
+
+    // Calls listener whenever the player asks to start a game.
+    public void addPlayListener(ActionListener listener) {
+        playButton.addActionListener(listener);
+    }
+}
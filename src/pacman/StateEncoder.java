@@ -0,0 +1,180 @@
+package pacman;
+
+import java.nio.ByteBuffer;
+
+// Encodes a game's state as frames for a remote viewer that keeps its own copy (see StateMirror).
+// The first frame, and the first after invalidate(), is FULL: the whole state, pellets included. Later
+// frames are UPDATEs: the clock, score, status and every sprite's position, plus only the pellets that
+// changed since the last frame this encoder wrote. An encoder therefore belongs to one viewer, and frames
+// it is not asked for (say, while that viewer is behind) simply fold into the next one.
+//
+// Frames are big-endian: the length of the rest as an int, then
+//   FULL:   type, tick, score (ints), status byte, power timer, Pacman's x and y, cols, rows and the ghost
+//           count (ints),
+//           each ghost's x and y (ints) and flags byte, then the pellet and power pellet bitmaps as
+//           TileBitSet.writeTo() packs them;
+//   UPDATE: type, tick, score, status, power timer, Pacman's x and y, each ghost's x, y and flags, then
+//           the number of pellets that changed and their tile indices (ints), and the same for power pellets.
+// SpectatorFeed adds a third, DELTA, for streams whose every frame is kept.
+public final class StateEncoder {
+    public static final byte FULL = 1;
+    public static final byte UPDATE = 2;
+    public static final byte DELTA = 3;
+
+    // Status byte values.
+    public static final int RUNNING = 0;
+    public static final int WON = 1;
+    public static final int LOST = 2;
+
+    // Ghost flag bits.
+    public static final int GHOST_IN_CAGE = 1;
+    public static final int GHOST_EDIBLE = 2;
+
+    private static final int FULL_FIXED_SIZE = 4 + 1 + 4 + 4 + 1 + 4 + 4 * 2 + 4 * 3;
+    private static final int UPDATE_FIXED_SIZE = 4 + 1 + 4 + 4 + 1 + 4 + 4 * 2 + 4 * 2;
+    private static final int GHOST_SIZE = 4 * 2 + 1;
+
+    private final TileBitSet sentPellets;
+    private final TileBitSet sentBigPellets;
+    private int sentVersion;
+    private boolean full = true;
+
+    // Constructs an encoder for a viewer of the given engine's game.
+    public StateEncoder(GameEngine engine) {
+        TileBitSet pellets = engine.getPellets();
+        sentPellets = new TileBitSet(pellets.getRows(), pellets.getCols());
+        sentBigPellets = new TileBitSet(pellets.getRows(), pellets.getCols());
+    }
+
+    // Returns the size of a FULL frame of an engine's game. No frame is larger, so a buffer of this size
+    // always has room for the next one.
+    public static int maxFrameSize(GameEngine engine) {
+        return FULL_FIXED_SIZE + GHOST_SIZE * engine.getGhostPool().size()
+                + engine.getPellets().packedSize() + engine.getBigPellets().packedSize();
+    }
+
+    // Makes the next frame FULL, for a viewer that has lost track or a game that has been restarted.
+    public void invalidate() {
+        full = true;
+    }
+
+    // Writes the next frame of the engine's current state into out, which must have room for
+    // maxFrameSize() bytes. Allocates nothing.
+    public void write(GameEngine engine, ByteBuffer out) {
+        TileBitSet pellets = engine.getPellets();
+        TileBitSet bigPellets = engine.getBigPellets();
+        int changed = 0;
+        int changedBig = 0;
+        if (!full && engine.getPelletVersion() != sentVersion) {
+            changed = countChanges(pellets, sentPellets);
+            changedBig = countChanges(bigPellets, sentBigPellets);
+        }
+        int ghostBytes = GHOST_SIZE * engine.getGhostPool().size();
+        int updateSize = UPDATE_FIXED_SIZE + ghostBytes + 4 * (changed + changedBig);
+        if (full || updateSize > maxFrameSize(engine)) {
+            writeFull(engine, out);
+        } else {
+            out.putInt(updateSize - 4).put(UPDATE);
+            writeHeader(engine, out);
+            writeGhosts(engine.getGhostPool(), out);
+            out.putInt(changed);
+            writeChanges(pellets, sentPellets, out, changed);
+            out.putInt(changedBig);
+            writeChanges(bigPellets, sentBigPellets, out, changedBig);
+        }
+        if (engine.getPelletVersion() != sentVersion || full) {
+            sentPellets.copyFrom(pellets);
+            sentBigPellets.copyFrom(bigPellets);
+            sentVersion = engine.getPelletVersion();
+        }
+        full = false;
+    }
+
+    private void writeFull(GameEngine engine, ByteBuffer out) {
+        GhostPool pool = engine.getGhostPool();
+        out.putInt(maxFrameSize(engine) - 4).put(FULL);
+        writeHeader(engine, out);
+        out.putInt(engine.getPellets().getCols()).putInt(engine.getPellets().getRows()).putInt(pool.size());
+        writeGhosts(pool, out);
+        engine.getPellets().writeTo(out);
+        engine.getBigPellets().writeTo(out);
+    }
+
+    // Returns the status byte for an engine's game.
+    static int statusOf(GameEngine engine) {
+        return engine.isGameWon() ? WON : engine.isGameOver() ? LOST : RUNNING;
+    }
+
+    private static void writeHeader(GameEngine engine, ByteBuffer out) {
+        out.putInt((int) engine.getTickCount()).putInt(engine.getScore()).put((byte) statusOf(engine)).putInt(engine.getPowerTimer());
+        out.putInt(engine.getPacman().getX()).putInt(engine.getPacman().getY());
+    }
+
+    // Returns ghost g's flag bits.
+    static int ghostFlags(GhostPool pool, int g) {
+        return (pool.isInCage(g) ? GHOST_IN_CAGE : 0) | (pool.isEdible(g) ? GHOST_EDIBLE : 0);
+    }
+
+    private static void writeGhosts(GhostPool pool, ByteBuffer out) {
+        for (int g = 0, n = pool.size(); g < n; g++) {
+            out.putInt(pool.getX(g)).putInt(pool.getY(g)).put((byte) ghostFlags(pool, g));
+        }
+    }
+
+    // Writes a non-negative int as a varint: seven bits a byte, lowest first, the top bit set on all but
+    // the last. Small values, the common case in a DELTA, take one byte.
+    static void putVarint(ByteBuffer out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.put((byte) (value | 0x80));
+            value >>>= 7;
+        }
+        out.put((byte) value);
+    }
+
+    // Writes any int as a varint, zigzag-mapped so small negative values stay short too.
+    static void putSignedVarint(ByteBuffer out, int value) {
+        putVarint(out, (value << 1) ^ (value >> 31));
+    }
+
+    static int getVarint(ByteBuffer in) {
+        int value = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = in.get();
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+    }
+
+    static int getSignedVarint(ByteBuffer in) {
+        int value = getVarint(in);
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    // Counts the tiles whose bit differs between the two sets.
+    static int countChanges(TileBitSet current, TileBitSet sent) {
+        int count = 0;
+        for (int w = 0, n = current.wordCount(); w < n; w++) {
+            count += Long.bitCount(current.word(w) ^ sent.word(w));
+        }
+        return count;
+    }
+
+    // Writes the tile index of each of the count tiles whose bit differs between the two sets.
+    private static void writeChanges(TileBitSet current, TileBitSet sent, ByteBuffer out, int count) {
+        int cols = current.getCols();
+        for (int w = 0, n = current.wordCount(); w < n && count > 0; w++) {
+            long changed = current.word(w) ^ sent.word(w);
+            if (changed == 0) {
+                continue;
+            }
+            int first = current.wordRow(w) * cols + current.wordCol(w);
+            while (changed != 0) {
+                out.putInt(first + Long.numberOfTrailingZeros(changed));
+                changed &= changed - 1;
+                count--;
+            }
+        }
+    }
+}
@@ -0,0 +1,181 @@
+package pacman;
+
+import java.nio.ByteBuffer;
+
+// A viewer's copy of one game, kept current by applying the frames a StateEncoder (or SpectatorFeed)
+// writes. Holds what a client needs to draw the game: the clock, score, status, power-up timer, sprite
+// positions and both pellet bitmaps.
+public final class StateMirror {
+    private int tick;
+    private int score;
+    private int status;
+    private int powerTimer;
+    private int pacmanX;
+    private int pacmanY;
+    private int ghostCount;
+    private int[] ghostX = new int[0];
+    private int[] ghostY = new int[0];
+    private byte[] ghostFlags = new byte[0];
+    private TileBitSet pellets;
+    private TileBitSet bigPellets;
+    private long frames;
+
+    // Applies one frame, read from in's position: its length field, then the body. Throws
+    // IllegalArgumentException for an UPDATE or DELTA before any FULL frame, or a frame of an unknown type.
+    public void apply(ByteBuffer in) {
+        in.getInt(); // Length.
+        byte type = in.get();
+        if (type != StateEncoder.FULL && type != StateEncoder.UPDATE && type != StateEncoder.DELTA) {
+            throw new IllegalArgumentException("Unknown frame type " + type);
+        }
+        if (type != StateEncoder.FULL && pellets == null) {
+            throw new IllegalArgumentException("Update before the first full frame");
+        }
+        if (type == StateEncoder.DELTA) {
+            applyDelta(in);
+            frames++;
+            return;
+        }
+        tick = in.getInt();
+        score = in.getInt();
+        status = in.get();
+        powerTimer = in.getInt();
+        pacmanX = in.getInt();
+        pacmanY = in.getInt();
+        if (type == StateEncoder.FULL) {
+            int cols = in.getInt();
+            int rows = in.getInt();
+            int count = in.getInt();
+            if (pellets == null || pellets.getCols() != cols || pellets.getRows() != rows) {
+                pellets = new TileBitSet(rows, cols);
+                bigPellets = new TileBitSet(rows, cols);
+            }
+            if (count != ghostX.length) {
+                ghostX = new int[count];
+                ghostY = new int[count];
+                ghostFlags = new byte[count];
+            }
+            ghostCount = count;
+            readGhosts(in);
+            pellets.readFrom(in);
+            bigPellets.readFrom(in);
+        } else {
+            readGhosts(in);
+            flip(pellets, in);
+            flip(bigPellets, in);
+        }
+        frames++;
+    }
+
+    private void readGhosts(ByteBuffer in) {
+        for (int g = 0; g < ghostCount; g++) {
+            ghostX[g] = in.getInt();
+            ghostY[g] = in.getInt();
+            ghostFlags[g] = in.get();
+        }
+    }
+
+    // Applies a DELTA frame's body, which is relative to the frame before it (see SpectatorFeed).
+    private void applyDelta(ByteBuffer in) {
+        tick = in.getInt();
+        score += StateEncoder.getSignedVarint(in);
+        status = in.get();
+        int timer = StateEncoder.getVarint(in);
+        powerTimer = timer == 0 ? Math.max(0, powerTimer - 1) : timer - 1;
+        pacmanX += StateEncoder.getSignedVarint(in);
+        pacmanY += StateEncoder.getSignedVarint(in);
+        for (int i = StateEncoder.getVarint(in), g = -1; i > 0; i--) {
+            g += 1 + StateEncoder.getVarint(in);
+            ghostX[g] += StateEncoder.getSignedVarint(in);
+            ghostY[g] += StateEncoder.getSignedVarint(in);
+            ghostFlags[g] = in.get();
+        }
+        flipGaps(pellets, in);
+        flipGaps(bigPellets, in);
+    }
+
+    // Toggles each listed tile: an UPDATE lists the tiles that changed, whichever way.
+    private static void flip(TileBitSet tiles, ByteBuffer in) {
+        for (int i = in.getInt(); i > 0; i--) {
+            toggle(tiles, in.getInt());
+        }
+    }
+
+    // Toggles each tile of a DELTA's list: a count, then each tile as its distance from the one before
+    // (the first from tile 0).
+    private static void flipGaps(TileBitSet tiles, ByteBuffer in) {
+        for (int i = StateEncoder.getVarint(in), tile = 0; i > 0; i--) {
+            tile += StateEncoder.getSignedVarint(in);
+            toggle(tiles, tile);
+        }
+    }
+
+    private static void toggle(TileBitSet tiles, int tile) {
+        if (tiles.get(tile)) {
+            tiles.clear(tile);
+        } else {
+            tiles.set(tile);
+        }
+    }
+
+    // Returns true once a FULL frame has been applied.
+    public boolean isSynced() {
+        return pellets != null;
+    }
+
+    public int getTick() {
+        return tick;
+    }
+
+    public int getScore() {
+        return score;
+    }
+
+    // Returns one of StateEncoder.RUNNING, WON or LOST.
+    public int getStatus() {
+        return status;
+    }
+
+    // Returns the ticks left of the current power-up, or 0 when none is active.
+    public int getPowerTimer() {
+        return powerTimer;
+    }
+
+    public int getPacmanX() {
+        return pacmanX;
+    }
+
+    public int getPacmanY() {
+        return pacmanY;
+    }
+
+    public int getGhostCount() {
+        return ghostCount;
+    }
+
+    public int getGhostX(int g) {
+        return ghostX[g];
+    }
+
+    public int getGhostY(int g) {
+        return ghostY[g];
+    }
+
+    // Returns ghost g's StateEncoder.GHOST_* flag bits.
+    public int getGhostFlags(int g) {
+        return ghostFlags[g];
+    }
+
+    public TileBitSet getPellets() {
+        return pellets;
+    }
+
+    public TileBitSet getBigPellets() {
+        return bigPellets;
+    }
+
+    // Returns the number of frames applied.
+    public long getFrames() {
+        return frames;
+    }
+}
@@ -0,0 +1,396 @@
+package pacman;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+// One bit per maze tile, stored in square chunks of CHUNK_SIZE x CHUNK_SIZE tiles.
+// Each chunk is CHUNK_SIZE longs, one per tile row, so a row's span within a chunk is a single word.
+// Chunks that are entirely clear or entirely set can share one read-only array (see compact());
+// writing to a shared chunk gives it a private copy first. Large mazes are mostly uniform rock,
+// so they cost little more than their corridors.
+// Tiles are still addressed by the flat index row * cols + col.
+public final class TileBitSet {
+    private static final int CHUNK_SHIFT = 6;
+    public static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    // Shared uniform chunks; never written to.
+    private static final long[] EMPTY_CHUNK = new long[CHUNK_SIZE];
+    private static final long[] FULL_CHUNK = new long[CHUNK_SIZE];
+    static {
+        Arrays.fill(FULL_CHUNK, -1L);
+    }
+
+    private final int rows;
+    private final int cols;
+    private final int chunkRows;
+    private final int chunkCols;
+    private final long[][] chunks; // chunkRow * chunkCols + chunkCol -> CHUNK_SIZE words
+
+    // Constructs an empty bit set covering a rows x cols grid.
+    public TileBitSet(int rows, int cols) {
+        if ((long) rows * cols > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Too many tiles for a flat index: " + cols + "x" + rows);
+        }
+        this.rows = rows;
+        this.cols = cols;
+        this.chunkRows = (rows + CHUNK_MASK) >>> CHUNK_SHIFT;
+        this.chunkCols = (cols + CHUNK_MASK) >>> CHUNK_SHIFT;
+        this.chunks = new long[chunkRows * chunkCols][];
+        Arrays.fill(chunks, EMPTY_CHUNK);
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    public int getCols() {
+        return cols;
+    }
+
+    // Returns the flat bit index of a tile.
+    public int indexOf(int row, int col) {
+        return row * cols + col;
+    }
+
+    private int chunkIndex(int row, int col) {
+        return (row >>> CHUNK_SHIFT) * chunkCols + (col >>> CHUNK_SHIFT);
+    }
+
+    public boolean get(int row, int col) {
+        // Shifts only use the low six bits, so 1L << col selects the column within the chunk.
+        return (chunks[chunkIndex(row, col)][row & CHUNK_MASK] & (1L << col)) != 0;
+    }
+
+    public boolean get(int index) {
+        return get(index / cols, index % cols);
+    }
+
+    public void set(int row, int col) {
+        int chunk = chunkIndex(row, col);
+        if (chunks[chunk] != FULL_CHUNK) {
+            writable(chunk)[row & CHUNK_MASK] |= 1L << col;
+        }
+    }
+
+    public void set(int index) {
+        set(index / cols, index % cols);
+    }
+
+    public void clear(int row, int col) {
+        int chunk = chunkIndex(row, col);
+        if (chunks[chunk] != EMPTY_CHUNK) {
+            writable(chunk)[row & CHUNK_MASK] &= ~(1L << col);
+        }
+    }
+
+    public void clear(int index) {
+        clear(index / cols, index % cols);
+    }
+
+    // Returns a chunk that may be written to, copying it first if it is shared.
+    private long[] writable(int chunk) {
+        long[] words = chunks[chunk];
+        if (words == EMPTY_CHUNK || words == FULL_CHUNK) {
+            words = words.clone();
+            chunks[chunk] = words;
+        }
+        return words;
+    }
+
+    // Sets every tile. Each chunk gets an array of its own, so that afterwards several threads can clear
+    // tiles at once as long as no two of them write to the same tile row.
+    public void setAll() {
+        for (int chunkRow = 0; chunkRow < chunkRows; chunkRow++) {
+            int rowsHere = Math.min(CHUNK_SIZE, rows - (chunkRow << CHUNK_SHIFT));
+            for (int chunkCol = 0; chunkCol < chunkCols; chunkCol++) {
+                int colsHere = Math.min(CHUNK_SIZE, cols - (chunkCol << CHUNK_SHIFT));
+                long[] words = new long[CHUNK_SIZE];
+                Arrays.fill(words, 0, rowsHere, colsHere == CHUNK_SIZE ? -1L : (1L << colsHere) - 1);
+                chunks[chunkRow * chunkCols + chunkCol] = words;
+            }
+        }
+    }
+
+    // Returns the number of 64-bit words backing the set, including the unused rows of partial chunks.
+    public int wordCount() {
+        return chunks.length << CHUNK_SHIFT;
+    }
+
+    // Returns one backing word; bit b of word w is tile (wordRow(w), wordCol(w) + b).
+    public long word(int w) {
+        return chunks[w >>> CHUNK_SHIFT][w & CHUNK_MASK];
+    }
+
+    // Returns the tile row that word w covers; may be past the last row for a partial chunk.
+    public int wordRow(int w) {
+        return (w >>> CHUNK_SHIFT) / chunkCols * CHUNK_SIZE + (w & CHUNK_MASK);
+    }
+
+    // Returns the first tile column that word w covers.
+    public int wordCol(int w) {
+        return (w >>> CHUNK_SHIFT) % chunkCols * CHUNK_SIZE;
+    }
+
+    // Makes this set a copy of another set of the same size. Shared chunks stay shared; private chunks
+    // are copied into this set's own arrays, so repeated copies do not allocate.
+    public void copyFrom(TileBitSet other) {
+        for (int i = 0; i < chunks.length; i++) {
+            long[] source = other.chunks[i];
+            if (source == EMPTY_CHUNK || source == FULL_CHUNK) {
+                chunks[i] = source;
+            } else {
+                long[] target = chunks[i];
+                if (target == EMPTY_CHUNK || target == FULL_CHUNK) {
+                    target = new long[CHUNK_SIZE];
+                    chunks[i] = target;
+                }
+                System.arraycopy(source, 0, target, 0, CHUNK_SIZE);
+            }
+        }
+    }
+
+    // Returns the number of bytes writeTo() produces: one bit per tile, rounded up to whole longs.
+    public int packedSize() {
+        return (int) (((long) rows * cols + 63) / 64 * 8);
+    }
+
+    // Writes the tiles row by row as a stream of rows * cols bits, without the padding of partial chunks.
+    public void writeTo(ByteBuffer out) {
+        long[][] chunks = this.chunks;
+        int lastCol = chunkCols - 1;
+        int lastWidth = cols - (lastCol << CHUNK_SHIFT); // Columns in the last chunk of each row.
+        long pending = 0;
+        int bits = 0;
+        for (int row = 0; row < rows; row++) {
+            int base = (row >>> CHUNK_SHIFT) * chunkCols;
+            int r = row & CHUNK_MASK;
+            // Whole words shift straight through the pending bits.
+            for (int chunkCol = 0; chunkCol < lastCol; chunkCol++) {
+                long word = chunks[base + chunkCol][r];
+                out.putLong(pending | word << bits);
+                pending = bits == 0 ? 0 : word >>> -bits;
+            }
+            // Bits past the last column are always clear, so the last word can be or-ed in whole.
+            long word = chunks[base + lastCol][r];
+            pending |= word << bits;
+            bits += lastWidth;
+            if (bits >= 64) {
+                out.putLong(pending);
+                bits -= 64;
+                pending = bits == 0 ? 0 : word >>> (lastWidth - bits);
+            }
+        }
+        if (bits > 0) {
+            out.putLong(pending);
+        }
+    }
+
+    // Replaces the tiles with a stream written by writeTo() on a set of the same size. Only words that
+    // change are written, so reading into a set whose chunks are already private does not allocate.
+    public void readFrom(ByteBuffer in) {
+        long[][] chunks = this.chunks;
+        int lastCol = chunkCols - 1;
+        int lastWidth = cols - (lastCol << CHUNK_SHIFT);
+        long lastMask = lastWidth == CHUNK_SIZE ? -1L : (1L << lastWidth) - 1;
+        long pending = 0;
+        int bits = 0;
+        if (lastCol == 0) {
+            // Mazes up to a chunk wide, the usual case, take one word per row with no column loop.
+            for (int row = 0; row < rows; row++) {
+                long word;
+                if (bits >= lastWidth) {
+                    word = pending & lastMask;
+                    pending >>>= lastWidth;
+                    bits -= lastWidth;
+                } else {
+                    long next = in.getLong();
+                    int used = lastWidth - bits;
+                    word = (pending | next << bits) & lastMask;
+                    pending = used == 64 ? 0 : next >>> used;
+                    bits += 64 - lastWidth;
+                }
+                long[] chunk = chunks[row >>> CHUNK_SHIFT];
+                if (chunk[row & CHUNK_MASK] != word) {
+                    writable(row >>> CHUNK_SHIFT)[row & CHUNK_MASK] = word;
+                }
+            }
+            return;
+        }
+        for (int row = 0; row < rows; row++) {
+            int base = (row >>> CHUNK_SHIFT) * chunkCols;
+            int r = row & CHUNK_MASK;
+            for (int chunkCol = 0; chunkCol <= lastCol; chunkCol++) {
+                int n = chunkCol < lastCol ? CHUNK_SIZE : lastWidth;
+                long word;
+                if (bits >= n) {
+                    word = pending & lastMask;
+                    pending >>>= n;
+                    bits -= n;
+                } else {
+                    long next = in.getLong();
+                    int used = n - bits;
+                    word = bits == 0 ? next : pending | next << bits;
+                    pending = used == 64 ? 0 : next >>> used;
+                    bits = 64 - used;
+                    if (n < CHUNK_SIZE) {
+                        word &= lastMask;
+                    }
+                }
+                int chunk = base + chunkCol;
+                if (chunks[chunk][r] != word) {
+                    writable(chunk)[r] = word;
+                }
+            }
+        }
+    }
+
+    // Clears every bit. Private chunks are zeroed in place and kept, so a set that is cleared and
+    // refilled over and over does not allocate.
+    public void clearAll() {
+        for (int i = 0; i < chunks.length; i++) {
+            if (chunks[i] == FULL_CHUNK) {
+                chunks[i] = EMPTY_CHUNK;
+            } else if (chunks[i] != EMPTY_CHUNK) {
+                Arrays.fill(chunks[i], 0L);
+            }
+        }
+    }
+
+    // Replaces every uniform private chunk with the shared one, releasing its memory.
+    public void compact() {
+        for (int chunkRow = 0; chunkRow < chunkRows; chunkRow++) {
+            compactChunkRow(chunkRow);
+        }
+    }
+
+    // Compacts the chunks covering rows chunkRow * CHUNK_SIZE up to the next chunk boundary,
+    // so a set filled from top to bottom can be compacted as it goes.
+    public void compactChunkRow(int chunkRow) {
+        boolean fullHeight = (chunkRow + 1) * CHUNK_SIZE <= rows;
+        for (int chunkCol = 0; chunkCol < chunkCols; chunkCol++) {
+            int i = chunkRow * chunkCols + chunkCol;
+            long[] words = chunks[i];
+            if (words == EMPTY_CHUNK || words == FULL_CHUNK) {
+                continue;
+            }
+            if (Arrays.equals(words, EMPTY_CHUNK)) {
+                chunks[i] = EMPTY_CHUNK;
+            } else if (fullHeight && (chunkCol + 1) * CHUNK_SIZE <= cols && Arrays.equals(words, FULL_CHUNK)) {
+                // Only whole chunks can be full: bits past the last row or column must stay clear.
+                chunks[i] = FULL_CHUNK;
+            }
+        }
+    }
+
+    // Returns the approximate heap size of the set, counting shared chunks once for the whole program.
+    public long getStorageBytes() {
+        long bytes = 16 + 8L * chunks.length;
+        for (long[] words : chunks) {
+            if (words != EMPTY_CHUNK && words != FULL_CHUNK) {
+                bytes += 16 + 8L * CHUNK_SIZE;
+            }
+        }
+        return bytes;
+    }
+
+    // Returns the number of set bits.
+    public int cardinality() {
+        int count = 0;
+        for (long[] words : chunks) {
+            if (words == FULL_CHUNK) {
+                count += CHUNK_SIZE * CHUNK_SIZE;
+            } else if (words != EMPTY_CHUNK) {
+                for (long word : words) {
+                    count += Long.bitCount(word);
+                }
+            }
+        }
+        return count;
+    }
+
+    // Returns the index of the first set bit at or after fromIndex in row-major order, or -1 if there is none.
+    public int nextSetBit(int fromIndex) {
+        if (fromIndex >= rows * cols) {
+            return -1;
+        }
+        int row = fromIndex / cols;
+        int col = fromIndex % cols;
+        while (row < rows) {
+            int base = (row >>> CHUNK_SHIFT) * chunkCols;
+            int r = row & CHUNK_MASK;
+            long mask = -1L << col; // Only the first word of the row starts part-way through.
+            for (int chunkCol = col >>> CHUNK_SHIFT; chunkCol < chunkCols; chunkCol++) {
+                long[] words = chunks[base + chunkCol];
+                if (words != EMPTY_CHUNK) {
+                    long word = words[r] & mask;
+                    if (word != 0) {
+                        return row * cols + (chunkCol << CHUNK_SHIFT) + Long.numberOfTrailingZeros(word);
+                    }
+                }
+                mask = -1L;
+            }
+            row++;
+            col = 0;
+        }
+        return -1;
+    }
+
+    // Returns true if any tile in columns fromCol..toCol (inclusive) of a row is set.
+    public boolean anyInRow(int row, int fromCol, int toCol) {
+        int base = (row >>> CHUNK_SHIFT) * chunkCols;
+        int r = row & CHUNK_MASK;
+        int firstChunk = fromCol >>> CHUNK_SHIFT;
+        int lastChunk = toCol >>> CHUNK_SHIFT;
+        long firstMask = -1L << fromCol;
+        long lastMask = -1L >>> (63 - (toCol & CHUNK_MASK));
+        if (firstChunk == lastChunk) {
+            return (chunks[base + firstChunk][r] & firstMask & lastMask) != 0;
+        }
+        if ((chunks[base + firstChunk][r] & firstMask) != 0) {
+            return true;
+        }
+        for (int chunk = firstChunk + 1; chunk < lastChunk; chunk++) {
+            if (chunks[base + chunk][r] != 0) {
+                return true;
+            }
+        }
+        return (chunks[base + lastChunk][r] & lastMask) != 0;
+    }
+
+    // Returns the first set column in fromCol..toCol (inclusive) of a row, or -1 if there is none.
+    public int nextSetInRow(int row, int fromCol, int toCol) {
+        return nextInRow(row, fromCol, toCol, 0L);
+    }
+
+    // Returns the first clear column in fromCol..toCol (inclusive) of a row, or -1 if there is none.
+    public int nextClearInRow(int row, int fromCol, int toCol) {
+        return nextInRow(row, fromCol, toCol, -1L);
+    }
+
+    // Scans a row span a word at a time; flip inverts the words so the same loop finds clear tiles.
+    private int nextInRow(int row, int fromCol, int toCol, long flip) {
+        int base = (row >>> CHUNK_SHIFT) * chunkCols;
+        int r = row & CHUNK_MASK;
+        long mask = -1L << fromCol;
+        for (int chunk = fromCol >>> CHUNK_SHIFT, last = toCol >>> CHUNK_SHIFT; chunk <= last; chunk++) {
+            long word = (chunks[base + chunk][r] ^ flip) & mask;
+            if (word != 0) {
+                int col = (chunk << CHUNK_SHIFT) + Long.numberOfTrailingZeros(word);
+                return col <= toCol ? col : -1;
+            }
+            mask = -1L;
+        }
+        return -1;
+    }
+
+    // Returns true if any tile in the inclusive rectangle is set.
+    public boolean anyInRect(int topRow, int leftCol, int bottomRow, int rightCol) {
+        for (int row = topRow; row <= bottomRow; row++) {
+            if (anyInRow(row, leftCol, rightCol)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,322 @@
+package pacman;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+// A batch of headless games behind a Gym-style vector environment, for training Pacman policies.
+// reset() starts every game, step() advances each game one tick with one action per game, and both leave
+// their results in flat primitive arrays that are allocated once and overwritten in place: observations,
+// rewards and done flags, indexed by environment. Games are stepped in parallel by a WorkerGang, and a step
+// allocates nothing, so a trainer can run millions of steps without touching the garbage collector.
+//
+// An observation is PLANES byte planes of rows x cols tiles, plane-major then row-major: walls, pellets,
+// power pellets, Pacman, dangerous ghosts and edible ghosts. The ghost planes count the ghosts whose centre
+// is on each tile. Actions are GameEngine direction codes: 0 for none, else 1 + a MazeTopology direction.
+// A game that ends is reset straight away from its own stream of seeds; its done flag says how it ended and
+// its observation already shows the next game, as in Gym's vector environments.
+public class VectorEnv implements AutoCloseable {
+    public static final int ACTIONS = 5;
+    public static final int PLANES = 6;
+    public static final int WALLS = 0;
+    public static final int PELLETS = 1;
+    public static final int POWER_PELLETS = 2;
+    public static final int PACMAN = 3;
+    public static final int GHOSTS = 4;
+    public static final int EDIBLE_GHOSTS = 5;
+
+    // Done flags.
+    public static final byte RUNNING = 0;
+    public static final byte WON = 1;
+    public static final byte LOST = 2;
+    public static final byte TRUNCATED = 3;
+
+    // Rewards: one per pellet eaten, plus a bonus or penalty when the game ends.
+    public static final float PELLET_REWARD = 1;
+    public static final float WIN_REWARD = 100;
+    public static final float LOSS_REWARD = -100;
+
+    // Tile size of the headless engines; a multiple of 4 so sprites stay tile-aligned.
+    private static final int TILE_SIZE = 16;
+
+    private final int envCount;
+    private final int maxTicks;
+    private final int rows;
+    private final int cols;
+    private final int planeSize;
+    private final int observationSize;
+    private final GameEngine[] engines;
+    private final GameRandom[] seeds;     // Each game's stream of reset seeds.
+    private final int[] pelletVersions;   // Pellet version each observation shows.
+    private final TileBitSet[] shownPellets;
+    private final TileBitSet[] shownBigPellets;
+    private final int[] pacmanTiles;      // Tile each observation shows Pacman on.
+    private final int[] ghostTiles;       // Tiles each observation shows the ghosts on, per game.
+    private final int ghostCount;
+
+    private final byte[] observations;
+    private final float[] rewards;
+    private final byte[] dones;
+    private int[] actions;
+
+    private final WorkerGang gang;
+    private final WorkerGang.Job resetJob = this::resetRange;
+    private final WorkerGang.Job stepJob = this::stepRange;
+
+    // Constructs envCount games on a maze, each with ghostCount ghosts and cut short after maxTicks ticks,
+    // stepped by the given number of threads. Call reset() before the first step().
+    public VectorEnv(Maze maze, int envCount, int ghostCount, int maxTicks, int threads) {
+        if (envCount < 1) {
+            throw new IllegalArgumentException("Need at least one environment: " + envCount);
+        }
+        this.envCount = envCount;
+        this.maxTicks = maxTicks;
+        this.ghostCount = ghostCount;
+        this.rows = maze.getHeight();
+        this.cols = maze.getWidth();
+        this.planeSize = rows * cols;
+        this.observationSize = PLANES * planeSize;
+        engines = new GameEngine[envCount];
+        seeds = new GameRandom[envCount];
+        for (int i = 0; i < envCount; i++) {
+            engines[i] = new GameEngine(maze, TILE_SIZE, i, ghostCount);
+            seeds[i] = new GameRandom(i);
+        }
+        pelletVersions = new int[envCount];
+        shownPellets = new TileBitSet[envCount];
+        shownBigPellets = new TileBitSet[envCount];
+        for (int i = 0; i < envCount; i++) {
+            shownPellets[i] = new TileBitSet(rows, cols);
+            shownBigPellets[i] = new TileBitSet(rows, cols);
+        }
+        pacmanTiles = new int[envCount];
+        ghostTiles = new int[envCount * ghostCount];
+        observations = new byte[Math.multiplyExact(envCount, observationSize)];
+        rewards = new float[envCount];
+        dones = new byte[envCount];
+        gang = new WorkerGang(threads, "vector-env");
+
+        // The walls never change, so their plane is written once.
+        TileBitSet walls = maze.getWalls();
+        for (int i = 0; i < envCount; i++) {
+            int base = i * observationSize + WALLS * planeSize;
+            for (int tile = walls.nextSetBit(0); tile >= 0; tile = walls.nextSetBit(tile + 1)) {
+                observations[base + tile] = 1;
+            }
+        }
+    }
+
+    // Starts a new game in every environment; environment i draws its seeds from a stream started at
+    // seed + i, so a batch replays exactly for the same seed and actions whatever the thread count.
+    public void reset(long seed) {
+        for (int i = 0; i < envCount; i++) {
+            seeds[i].setState(seed + i);
+        }
+        gang.run(envCount, resetJob);
+    }
+
+    // Advances every game one tick. actions holds one action per environment. Afterwards the observations
+    // show each game's new state, rewards what the tick earned and dones whether the game ended.
+    public void step(int[] actions) {
+        if (actions.length != envCount) {
+            throw new IllegalArgumentException("Expected " + envCount + " actions, got " + actions.length);
+        }
+        for (int i = 0; i < envCount; i++) {
+            if (actions[i] < 0 || actions[i] >= ACTIONS) {
+                throw new IllegalArgumentException("Action out of range for environment " + i + ": " + actions[i]);
+            }
+        }
+        this.actions = actions;
+        gang.run(envCount, stepJob);
+        this.actions = null;
+    }
+
+    private void resetRange(int share, int from, int to) {
+        for (int i = from; i < to; i++) {
+            startGame(i);
+            rewards[i] = 0;
+            dones[i] = RUNNING;
+        }
+    }
+
+    private void stepRange(int share, int from, int to) {
+        int[] actions = this.actions;
+        for (int i = from; i < to; i++) {
+            int action = actions[i];
+            GameEngine engine = engines[i];
+            int scoreBefore = engine.getScore();
+            int direction = action - 1;
+            engine.step(action == 0 ? 0 : MazeTopology.DIR_X[direction], action == 0 ? 0 : MazeTopology.DIR_Y[direction]);
+
+            float reward = (scoreBefore - engine.getScore()) * PELLET_REWARD;
+            byte done = RUNNING;
+            if (engine.isGameWon()) {
+                reward += WIN_REWARD;
+                done = WON;
+            } else if (engine.isGameOver()) {
+                reward += LOSS_REWARD;
+                done = LOST;
+            } else if (engine.getTickCount() >= maxTicks) {
+                done = TRUNCATED;
+            }
+            rewards[i] = reward;
+            dones[i] = done;
+            if (done != RUNNING) {
+                startGame(i);
+            } else {
+                observe(i);
+            }
+        }
+    }
+
+    // Resets environment i's engine with the next seed of its stream and redraws its observation.
+    private void startGame(int i) {
+        engines[i].reset(seeds[i].nextLong());
+        int base = i * observationSize;
+        Arrays.fill(observations, base + PACMAN * planeSize, base + observationSize, (byte) 0);
+        pacmanTiles[i] = -1;
+        Arrays.fill(ghostTiles, i * ghostCount, (i + 1) * ghostCount, -1);
+        observe(i);
+    }
+
+    // Brings environment i's observation up to date with its engine.
+    private void observe(int i) {
+        GameEngine engine = engines[i];
+        int base = i * observationSize;
+        if (engine.getPelletVersion() != pelletVersions[i]) {
+            syncPlane(engine.getPellets(), shownPellets[i], base + PELLETS * planeSize);
+            syncPlane(engine.getBigPellets(), shownBigPellets[i], base + POWER_PELLETS * planeSize);
+            pelletVersions[i] = engine.getPelletVersion();
+        }
+
+        // Move each sprite's mark from the tile it was shown on to the one it is on now.
+        int pacmanTile = tileOf(engine, engine.getPacman().getX(), engine.getPacman().getY());
+        if (pacmanTiles[i] >= 0) {
+            observations[base + PACMAN * planeSize + pacmanTiles[i]] = 0;
+        }
+        observations[base + PACMAN * planeSize + pacmanTile] = 1;
+        pacmanTiles[i] = pacmanTile;
+
+        GhostPool pool = engine.getGhostPool();
+        int ghostBase = i * ghostCount;
+        for (int g = 0; g < ghostCount; g++) {
+            int shown = ghostTiles[ghostBase + g];
+            if (shown >= 0) {
+                observations[base + shown]--;
+            }
+        }
+        for (int g = 0; g < ghostCount; g++) {
+            int tile = tileOf(engine, pool.getX(g), pool.getY(g));
+            int shown = base + (pool.isEdible(g) ? EDIBLE_GHOSTS : GHOSTS) * planeSize + tile;
+            observations[shown]++;
+            ghostTiles[ghostBase + g] = shown - base;
+        }
+    }
+
+    // Updates the tiles of a plane whose bit changed since shown was taken, then takes it again.
+    // Pellets change a few at a time, so comparing words beats rewriting the plane.
+    private void syncPlane(TileBitSet tiles, TileBitSet shown, int offset) {
+        for (int w = 0, n = tiles.wordCount(); w < n; w++) {
+            long current = tiles.word(w);
+            long changed = current ^ shown.word(w);
+            if (changed == 0) {
+                continue;
+            }
+            int first = offset + tiles.wordRow(w) * cols + tiles.wordCol(w);
+            while (changed != 0) {
+                int bit = Long.numberOfTrailingZeros(changed);
+                changed &= changed - 1;
+                observations[first + bit] = (byte) (current >>> bit & 1);
+            }
+        }
+        shown.copyFrom(tiles);
+    }
+
+    // Returns the tile under the centre of a sprite at (x, y), clamped to the maze.
+    private int tileOf(GameEngine engine, int x, int y) {
+        int half = TILE_SIZE / 2;
+        int row = Math.min(rows - 1, Math.max(0, (y + half - engine.getYOffset()) / TILE_SIZE));
+        int col = Math.min(cols - 1, Math.max(0, (x + half - engine.getXOffset()) / TILE_SIZE));
+        return row * cols + col;
+    }
+
+    // Returns every environment's observation, observationSize() bytes each.
+    public byte[] getObservations() {
+        return observations;
+    }
+
+    public float[] getRewards() {
+        return rewards;
+    }
+
+    public byte[] getDones() {
+        return dones;
+    }
+
+    public int getObservationSize() {
+        return observationSize;
+    }
+
+    public int getEnvCount() {
+        return envCount;
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    public int getCols() {
+        return cols;
+    }
+
+    // Returns environment i's engine, for inspection; stepping or resetting it directly puts its
+    // observation out of date until the next step.
+    public GameEngine getEngine(int i) {
+        return engines[i];
+    }
+
+    @Override
+    public void close() {
+        gang.close();
+    }
+
+    // Usage: VectorEnv [envs] [threads] [steps] [maze file]
+    // Steps a batch of games with random actions and reports the throughput.
+    public static void main(String[] args) throws IOException {
+        int envs = args.length > 0 ? Integer.parseInt(args[0]) : 256;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        int steps = args.length > 2 ? Integer.parseInt(args[2]) : 2000;
+        Maze maze = args.length > 3 ? Maze.load(Paths.get(args[3])) : Maze.standard();
+
+        try (VectorEnv env = new VectorEnv(maze, envs, GameEngine.DEFAULT_GHOST_COUNT, 5000, threads)) {
+            int[] actions = new int[envs];
+            GameRandom random = new GameRandom(1);
+            env.reset(0);
+            for (int warmUp = 0; warmUp < steps / 4; warmUp++) {
+                env.step(actions);
+            }
+            long games = 0;
+            double totalReward = 0;
+            long start = System.nanoTime();
+            for (int s = 0; s < steps; s++) {
+                // Hold each heading for a while, as a policy would, so Pacman gets somewhere.
+                for (int i = 0; i < envs; i++) {
+                    if (random.nextInt(16) == 0) {
+                        actions[i] = 1 + random.nextInt(4);
+                    }
+                }
+                env.step(actions);
+                for (int i = 0; i < envs; i++) {
+                    totalReward += env.getRewards()[i];
+                    if (env.getDones()[i] != RUNNING) {
+                        games++;
+                    }
+                }
+            }
+            double seconds = (System.nanoTime() - start) / 1e9;
+            System.out.printf("envs=%d threads=%d: %d steps in %.2f s, %.2f M env-steps/s, %d games ended, mean reward %.3f/step%n",
+                    envs, threads, (long) envs * steps, seconds, (double) envs * steps / seconds / 1e6, games,
+                    totalReward / ((double) envs * steps));
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package pacman;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+// A fixed team of threads that split one job over a range of indices, in lockstep with the calling thread.
+// It is for work cut into many short rounds, such as stepping a batch of games once: fork-join tasks are
+// objects, so a pool would allocate every round, while the gang reuses its threads and hands out each round
+// with a generation counter, so a round allocates nothing. The caller works on the first share itself and
+// returns when every share is done.
+public final class WorkerGang implements AutoCloseable {
+    // How long an idle thread spins before parking; rounds usually follow each other closely.
+    private static final int SPIN_LIMIT = 1 << 10;
+
+    // One round's work: handles the indices from (inclusive) to to (exclusive). share numbers the thread
+    // running it, from 0 for the caller up to getThreads() - 1, for jobs that keep scratch space per thread.
+    public interface Job {
+        void run(int share, int from, int to);
+    }
+
+    private final Thread[] workers;
+    private final AtomicInteger pending = new AtomicInteger();
+    private volatile int generation;
+    private volatile boolean closed;
+    private Job job;
+    private int count;
+    private Thread caller;
+    private volatile Throwable failure;
+
+    // Starts a gang of threads - 1 daemon threads; with one thread, rounds simply run on the caller.
+    public WorkerGang(int threads, String name) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("A gang needs at least one thread: " + threads);
+        }
+        workers = new Thread[threads - 1];
+        for (int i = 0; i < workers.length; i++) {
+            int share = i + 1;
+            workers[i] = new Thread(() -> work(share), name + "-" + share);
+            workers[i].setDaemon(true);
+        }
+        for (Thread worker : workers) {
+            worker.start();
+        }
+    }
+
+    // Returns the number of threads sharing each round, counting the caller.
+    public int getThreads() {
+        return workers.length + 1;
+    }
+
+    // Runs job over [0, count) split into one contiguous share per thread, and waits for every share.
+    // An exception thrown by any share is rethrown here once the round is over. Not reentrant: only one
+    // thread may run rounds at a time.
+    public void run(int count, Job job) {
+        if (closed) {
+            throw new IllegalStateException("Gang is closed");
+        }
+        if (workers.length == 0 || count <= 1) {
+            job.run(0, 0, count);
+            return;
+        }
+        this.job = job;
+        this.count = count;
+        this.caller = Thread.currentThread();
+        pending.set(workers.length);
+        generation++; // Publishes the fields above to the workers.
+        for (Thread worker : workers) {
+            LockSupport.unpark(worker);
+        }
+        try {
+            runShare(0);
+        } finally {
+            for (int spins = 0; pending.get() != 0; spins++) {
+                if (spins < SPIN_LIMIT) {
+                    Thread.onSpinWait();
+                } else {
+                    LockSupport.park(this);
+                }
+            }
+            this.job = null;
+        }
+        Throwable thrown = failure;
+        if (thrown != null) {
+            failure = null;
+            if (thrown instanceof RuntimeException) {
+                throw (RuntimeException) thrown;
+            }
+            if (thrown instanceof Error) {
+                throw (Error) thrown;
+            }
+            throw new IllegalStateException(thrown);
+        }
+    }
+
+    private void runShare(int share) {
+        int threads = workers.length + 1;
+        int from = (int) ((long) count * share / threads);
+        int to = (int) ((long) count * (share + 1) / threads);
+        if (from < to) {
+            job.run(share, from, to);
+        }
+    }
+
+    // The loop of each worker thread: wait for a new generation, run this thread's share, report back.
+    private void work(int share) {
+        int seen = 0;
+        while (true) {
+            for (int spins = 0; generation == seen && !closed; spins++) {
+                if (spins < SPIN_LIMIT) {
+                    Thread.onSpinWait();
+                } else {
+                    LockSupport.park(this);
+                }
+            }
+            if (closed) {
+                return;
+            }
+            seen = generation;
+            try {
+                runShare(share);
+            } catch (Throwable t) {
+                failure = t;
+            }
+            if (pending.decrementAndGet() == 0) {
+                LockSupport.unpark(caller);
+            }
+        }
+    }
+
+    // Stops the worker threads once they finish the current round.
+    @Override
+    public void close() {
+        closed = true;
+        for (Thread worker : workers) {
+            LockSupport.unpark(worker);
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package pacman;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.stream.Stream;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DynamicTest;
+import org.junit.jupiter.api.TestFactory;
+
+// AllocationCheck as part of mvn verify: every operation EngineBenchmark marks allocation-free must allocate
+// exactly zero bytes once warmed up. An integration test, so failsafe runs it in a JVM of its own, where no
+// other test has shaped what the JIT compiled.
+class AllocationCheckIT {
+    private static final long MEASURE_MILLIS = 500;
+
+    private static EngineBenchmark bench;
+
+    @BeforeAll
+    static void setUp() {
+        bench = new EngineBenchmark(MEASURE_MILLIS);
+        bench.defineBenchmarks();
+    }
+
+    @AfterAll
+    static void tearDown() {
+        bench.close();
+    }
+
+    @TestFactory
+    Stream<DynamicTest> allocationFreeOperationsAllocateNothing() {
+        long[] result = new long[2];
+        return bench.getBenchmarks().stream()
+                .filter(benchmark -> benchmark.allocationFree)
+                .map(benchmark -> DynamicTest.dynamicTest(benchmark.name, () ->
+                        assertEquals(0, AllocationCheck.allocatedBytes(benchmark, MEASURE_MILLIS, result),
+                                benchmark.name + " allocated")));
+    }
+}
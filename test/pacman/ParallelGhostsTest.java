@@ -0,0 +1,67 @@
+package pacman;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.nio.ByteBuffer;
+import org.junit.jupiter.api.Test;
+
+// Ghosts moved by a gang of worker threads must play the game out exactly as the ticking thread alone does,
+// whatever the number of threads.
+class ParallelGhostsTest {
+    private static final int MAX_THREADS = 4;
+    private static final int TICKS = 2000;
+    private static final long SEED = 77;
+
+    @Test
+    void everyThreadCountPlaysTheSameGame() {
+        // 1500 ghosts are enough for the gang to be used; 4 are not, which must not matter either.
+        for (int ghosts : new int[] {4, 1500}) {
+            for (Maze maze : new Maze[] {Maze.standard(), MazeGenerator.generate(128, 128, MazeGenerator.DEFAULT_DENSITY, 5)}) {
+                compareThreadCounts(maze, ghosts);
+            }
+        }
+    }
+
+    // Steps an engine without a gang and one with a gang of each size in lockstep, comparing every tick.
+    private static void compareThreadCounts(Maze maze, int ghosts) {
+        GameEngine reference = new GameEngine(maze, 16, SEED, ghosts);
+        GameEngine[] engines = new GameEngine[MAX_THREADS];
+        WorkerGang[] gangs = new WorkerGang[MAX_THREADS];
+        try {
+            for (int i = 0; i < MAX_THREADS; i++) {
+                gangs[i] = new WorkerGang(i + 1, "test-ghosts");
+                engines[i] = new GameEngine(maze, 16, SEED, ghosts);
+                engines[i].setGhostGang(gangs[i]);
+            }
+            for (int tick = 0; tick < TICKS; tick++) {
+                if (reference.isFinished()) {
+                    reference.reset(tick);
+                    for (GameEngine engine : engines) {
+                        engine.reset(tick);
+                    }
+                }
+                // Turn every half second so Pacman keeps moving through the maze.
+                int dir = (tick / 15) & 3;
+                reference.step(MazeTopology.DIR_X[dir], MazeTopology.DIR_Y[dir]);
+                ByteBuffer expected = snapshot(reference);
+                for (int i = 0; i < MAX_THREADS; i++) {
+                    engines[i].step(MazeTopology.DIR_X[dir], MazeTopology.DIR_Y[dir]);
+                    assertEquals(expected, snapshot(engines[i]), ghosts + " ghosts on a " + maze.getWidth() + "x"
+                            + maze.getHeight() + " maze, " + (i + 1) + " threads, tick " + tick);
+                }
+            }
+        } finally {
+            for (WorkerGang gang : gangs) {
+                if (gang != null) {
+                    gang.close();
+                }
+            }
+        }
+    }
+
+    private static ByteBuffer snapshot(GameEngine engine) {
+        ByteBuffer buffer = ByteBuffer.allocate(engine.getSnapshotSize());
+        engine.saveSnapshot(buffer);
+        return buffer.flip();
+    }
+}
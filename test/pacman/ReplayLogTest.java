@@ -0,0 +1,59 @@
+package pacman;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import org.junit.jupiter.api.Test;
+
+// A recorded game, written out and read back, must replay to exactly the state the game ended in.
+class ReplayLogTest {
+    private static final int GAMES = 200;
+    private static final int MAX_TICKS = 20_000;
+
+    @Test
+    void replaysReproduceTheRecordedGames() throws IOException {
+        Maze maze = Maze.standard();
+        for (int game = 0; game < GAMES; game++) {
+            GameRandom random = new GameRandom(7 + game);
+            GameEngine engine = new GameEngine(maze, 16, random.nextLong(), GameEngine.DEFAULT_GHOST_COUNT);
+            engine.startRecording();
+            play(engine, random);
+            ReplayLog recording = engine.getRecording();
+            if (!recording.isFinished()) {
+                recording.finish(engine.getTickCount());
+            }
+            byte[] log = recording.toByteArray();
+
+            GameEngine replayed = ReplayPlayer.run(ReplayLog.parse(log), maze);
+            assertEquals(snapshot(engine), snapshot(replayed), "game " + game);
+        }
+    }
+
+    @Test
+    void unfinishedLogsCannotBeReplayed() {
+        GameEngine engine = new GameEngine(Maze.standard(), 16, 1, GameEngine.DEFAULT_GHOST_COUNT);
+        ReplayLog recording = engine.startRecording();
+        engine.step(1, 0);
+        assertThrows(IllegalArgumentException.class, () -> new ReplayPlayer(recording));
+    }
+
+    // Plays until the game ends or MAX_TICKS, turning at random and whenever Pacman stops.
+    private static void play(GameEngine engine, GameRandom random) {
+        int dir = random.nextInt(4);
+        for (int tick = 0; tick < MAX_TICKS && !engine.isFinished(); tick++) {
+            Pacman pacman = engine.getPacman();
+            if ((pacman.getDx() == 0 && pacman.getDy() == 0) || random.nextInt(30) == 0) {
+                dir = random.nextInt(4);
+            }
+            engine.step(MazeTopology.DIR_X[dir], MazeTopology.DIR_Y[dir]);
+        }
+    }
+
+    private static ByteBuffer snapshot(GameEngine engine) {
+        ByteBuffer buffer = ByteBuffer.allocate(engine.getSnapshotSize());
+        engine.saveSnapshot(buffer);
+        return buffer.flip();
+    }
+}
@@ -0,0 +1,51 @@
+package pacman;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.nio.ByteBuffer;
+import org.junit.jupiter.api.Test;
+
+// A reset game must start as if the engine had just been built, whatever keys the last one left behind.
+class ResetTest {
+    private static final int TILE_SIZE = 16;
+    private static final long SEED = 11;
+
+    @Test
+    void keysQueuedForTheOldGameAreDropped() {
+        Maze maze = Maze.standard();
+        GameEngine reset = new GameEngine(maze, TILE_SIZE, 5, GameEngine.DEFAULT_GHOST_COUNT);
+        reset.steer(0, 1);
+        reset.reset(SEED);
+        GameEngine fresh = new GameEngine(maze, TILE_SIZE, SEED, GameEngine.DEFAULT_GHOST_COUNT);
+        play(reset, 50);
+        play(fresh, 50);
+        assertEquals(state(fresh), state(reset));
+    }
+
+    @Test
+    void theKeyInForceBeforeAResetStillSteersAfterIt() {
+        Maze maze = Maze.standard();
+        GameEngine reset = new GameEngine(maze, TILE_SIZE, 5, GameEngine.DEFAULT_GHOST_COUNT);
+        reset.steer(1, 0);
+        play(reset, 10);
+        reset.reset(SEED);
+        reset.steer(1, 0);
+        GameEngine fresh = new GameEngine(maze, TILE_SIZE, SEED, GameEngine.DEFAULT_GHOST_COUNT);
+        fresh.steer(1, 0);
+        play(reset, 50);
+        play(fresh, 50);
+        assertEquals(state(fresh), state(reset));
+    }
+
+    private static void play(GameEngine engine, int ticks) {
+        for (int i = 0; i < ticks && !engine.isFinished(); i++) {
+            engine.update();
+        }
+    }
+
+    private static ByteBuffer state(GameEngine engine) {
+        ByteBuffer buffer = ByteBuffer.allocate(engine.getSnapshotSize());
+        engine.saveSnapshot(buffer);
+        return buffer.flip().position(GameEngine.SNAPSHOT_SETUP_SIZE);
+    }
+}
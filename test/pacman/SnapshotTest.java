@@ -0,0 +1,134 @@
+package pacman;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+// A restored snapshot must carry on exactly as the game it was taken of, and a checkpoint file must give
+// back the last game saved in it.
+class SnapshotTest {
+    private static final int TILE_SIZE = 16;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void restoredGamesPlayOnIdentically() {
+        Maze maze = Maze.standard();
+        for (int game = 0; game < 100; game++) {
+            GameEngine original = new GameEngine(maze, TILE_SIZE, game, GameEngine.DEFAULT_GHOST_COUNT);
+            play(original, game * 7, 100 + game * 3);
+            ByteBuffer snapshot = ByteBuffer.allocate(original.getSnapshotSize());
+            original.saveSnapshot(snapshot);
+            assertEquals(original.getSnapshotSize(), snapshot.position());
+            snapshot.flip();
+
+            GameEngine rebuilt = GameEngine.fromSnapshot(maze, snapshot.duplicate());
+            GameEngine reseeded = new GameEngine(maze, TILE_SIZE, game + 1000, GameEngine.DEFAULT_GHOST_COUNT);
+            reseeded.restoreSnapshot(snapshot.duplicate());
+            play(original, game * 13, 800);
+            play(rebuilt, game * 13, 800);
+            play(reseeded, game * 13, 800);
+            assertEquals(state(original), state(rebuilt), "rebuilt game " + game);
+            assertEquals(state(original), state(reseeded), "restored game " + game);
+
+            // Rewinding the original replays the same 800 ticks.
+            ByteBuffer end = state(original);
+            original.restoreSnapshot(snapshot.duplicate());
+            play(original, game * 13, 800);
+            assertEquals(end, state(original), "rewound game " + game);
+        }
+    }
+
+    @Test
+    void phaseModeSurvivesARestore() {
+        Maze maze = Maze.standard();
+        ReplayLog log = new ReplayLog(3, GameEngine.DEFAULT_GHOST_COUNT, TILE_SIZE, 0, 0, maze);
+        log.record(0, GameEngine.encodeInput(1, 0, GameEngine.INPUT_PHASE));
+        log.finish(1000);
+        GameEngine phasing = log.createEngine(maze);
+        for (int i = 0; i < 40; i++) {
+            phasing.update();
+        }
+        ByteBuffer snapshot = ByteBuffer.allocate(phasing.getSnapshotSize());
+        phasing.saveSnapshot(snapshot);
+        GameEngine restored = GameEngine.fromSnapshot(maze, snapshot.flip());
+        for (int i = 0; i < 50; i++) {
+            phasing.update();
+            restored.update();
+        }
+        assertEquals(state(phasing), state(restored));
+    }
+
+    @Test
+    void checkpointsGiveBackTheLastIntactSave() throws IOException {
+        Maze maze = Maze.standard();
+        Path file = dir.resolve("game.checkpoint");
+        GameEngine engine = new GameEngine(maze, TILE_SIZE, 9, GameEngine.DEFAULT_GHOST_COUNT);
+        ByteBuffer previous = null;
+        try (Checkpoint checkpoint = Checkpoint.open(file, engine.getSnapshotSize())) {
+            for (int i = 0; i < 50; i++) {
+                previous = state(engine);
+                engine.step(1, 0);
+                checkpoint.save(engine);
+            }
+        }
+        assertEquals(state(engine), state(Checkpoint.load(file, maze)));
+
+        // A save cut short leaves its slot's CRC wrong; loading falls back to the save before it.
+        byte[] bytes = Files.readAllBytes(file);
+        ByteBuffer header = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+        int slotSize = header.getInt(8);
+        int newest = header.getLong(12) > header.getLong(12 + slotSize) ? 0 : 1;
+        bytes[12 + newest * slotSize + 16 + 50] ^= 1;
+        Files.write(file, bytes);
+        assertEquals(previous, state(Checkpoint.load(file, maze)));
+
+        assertNull(Checkpoint.load(file, MazeGenerator.generate(28, 31, MazeGenerator.DEFAULT_DENSITY, 1)));
+
+        // A finished game is not resumed.
+        try (Checkpoint checkpoint = Checkpoint.open(file, engine.getSnapshotSize())) {
+            while (!engine.isFinished()) {
+                engine.step(0, 0);
+            }
+            checkpoint.save(engine);
+        }
+        assertNull(Checkpoint.load(file, maze));
+    }
+
+    @Test
+    void largeMazesRestore() {
+        Maze maze = MazeGenerator.generate(1024, 1024, MazeGenerator.DEFAULT_DENSITY, 3);
+        GameEngine original = new GameEngine(maze, TILE_SIZE, 3, GameEngine.DEFAULT_GHOST_COUNT);
+        play(original, 2, 300);
+        ByteBuffer snapshot = ByteBuffer.allocateDirect(original.getSnapshotSize());
+        original.saveSnapshot(snapshot);
+        GameEngine rebuilt = GameEngine.fromSnapshot(maze, snapshot.flip());
+        play(original, 3, 500);
+        play(rebuilt, 3, 500);
+        assertEquals(state(original), state(rebuilt));
+    }
+
+    // Steps a game with random turns until it ends or the given number of ticks has run.
+    private static void play(GameEngine engine, long seed, int ticks) {
+        GameRandom random = new GameRandom(seed);
+        for (int i = 0; i < ticks && !engine.isFinished(); i++) {
+            int dir = random.nextInt(4);
+            engine.step(MazeTopology.DIR_X[dir], MazeTopology.DIR_Y[dir]);
+        }
+    }
+
+    // Returns the game's state: its snapshot without the setup, which records the seed it was built with.
+    private static ByteBuffer state(GameEngine engine) {
+        ByteBuffer buffer = ByteBuffer.allocate(engine.getSnapshotSize());
+        engine.saveSnapshot(buffer);
+        return buffer.flip().position(GameEngine.SNAPSHOT_SETUP_SIZE);
+    }
+}
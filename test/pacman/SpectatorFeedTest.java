@@ -0,0 +1,102 @@
+package pacman;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+import org.junit.jupiter.api.Test;
+
+// Spectators following a feed must see the game exactly as it is: a reader that keeps up after every tick,
+// one that drops behind and is lapped, and readers on threads of their own that the game never waits for.
+class SpectatorFeedTest {
+    private static final int TICKS = 100_000;
+    private static final long THREADED_NANOS = 1_000_000_000L;
+
+    @Test
+    void readersRebuildTheGameFromDeltasAndKeyframes() {
+        GameEngine engine = new GameEngine(Maze.standard(), 16, 5, 6);
+        SpectatorFeed feed = new SpectatorFeed(engine);
+        SpectatorFeed.Reader eager = feed.newReader();
+        SpectatorFeed.Reader lazy = null;
+        GameRandom random = new GameRandom(1);
+        int dir = 0;
+        int lazyWait = 0;
+        for (int tick = 0; tick < TICKS; tick++) {
+            if (random.nextInt(40) == 0) {
+                dir = random.nextInt(4);
+            }
+            engine.step(MazeTopology.DIR_X[dir], MazeTopology.DIR_Y[dir]);
+            feed.publish();
+            if (tick == 100) {
+                lazy = feed.newReader();
+            }
+            eager.poll();
+            StateEncoderTest.assertMirrors(engine, eager.getMirror(), "eager reader, tick " + tick);
+            // The lazy reader looks in every few thousand ticks, often after the ring has lapped it.
+            if (lazy != null && --lazyWait <= 0) {
+                lazy.poll();
+                StateEncoderTest.assertMirrors(engine, lazy.getMirror(), "lazy reader, tick " + tick);
+                lazyWait = random.nextInt(3000);
+            }
+            if (engine.isFinished()) {
+                engine.reset(random.nextLong());
+            }
+        }
+        assertEquals(0, eager.getResyncs(), "the eager reader never fell behind");
+        assertTrue(lazy.getResyncs() > 0, "the lazy reader was never lapped");
+    }
+
+    @Test
+    void slowReadersDoNotHoldUpTheGame() throws InterruptedException {
+        GameEngine engine = new GameEngine(Maze.standard(), 16, 5, 6);
+        SpectatorFeed feed = new SpectatorFeed(engine);
+        SpectatorFeed.Reader[] readers = new SpectatorFeed.Reader[8];
+        Thread[] threads = new Thread[readers.length];
+        AtomicBoolean running = new AtomicBoolean(true);
+        for (int i = 0; i < readers.length; i++) {
+            SpectatorFeed.Reader reader = feed.newReader();
+            // Half the readers poll flat out; the rest sleep between polls, two of them for far longer
+            // than the ring lasts.
+            long pauseNanos = i % 2 == 0 ? 0 : i % 4 == 1 ? 1_000_000L : 200_000_000L;
+            readers[i] = reader;
+            threads[i] = new Thread(() -> {
+                while (running.get()) {
+                    reader.poll();
+                    if (pauseNanos > 0) {
+                        LockSupport.parkNanos(pauseNanos);
+                    } else {
+                        Thread.onSpinWait();
+                    }
+                }
+            }, "spectator-" + i);
+            threads[i].start();
+        }
+
+        GameRandom random = new GameRandom(3);
+        int dir = 0;
+        long start = System.nanoTime();
+        for (int tick = 0; System.nanoTime() - start < THREADED_NANOS; tick++) {
+            if (random.nextInt(40) == 0) {
+                dir = random.nextInt(4);
+            }
+            engine.step(MazeTopology.DIR_X[dir], MazeTopology.DIR_Y[dir]);
+            feed.publish();
+            if (engine.isFinished()) {
+                engine.reset(random.nextLong());
+            }
+            if ((tick & 63) == 0) {
+                Thread.yield(); // Give the readers a turn on a machine with few cores.
+            }
+        }
+        running.set(false);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        for (int i = 0; i < readers.length; i++) {
+            readers[i].poll();
+            StateEncoderTest.assertMirrors(engine, readers[i].getMirror(), "reader " + i);
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package pacman;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.ByteBuffer;
+import org.junit.jupiter.api.Test;
+
+// A StateMirror fed an encoder's frames must hold exactly the state of the game they were written from,
+// however many ticks pass between frames.
+class StateEncoderTest {
+    private static final int TICKS = 60_000;
+
+    @Test
+    void mirrorsFollowTheGame() {
+        for (Maze maze : new Maze[] {Maze.standard(), MazeGenerator.generate(200, 150, MazeGenerator.DEFAULT_DENSITY, 3)}) {
+            GameEngine engine = new GameEngine(maze, 16, 5, 6);
+            StateEncoder encoder = new StateEncoder(engine);
+            StateMirror mirror = new StateMirror();
+            ByteBuffer frame = ByteBuffer.allocate(StateEncoder.maxFrameSize(engine));
+            GameRandom random = new GameRandom(1);
+            int dir = 0;
+            for (int tick = 0; tick < TICKS; tick++) {
+                if (random.nextInt(20) == 0) {
+                    dir = random.nextInt(4);
+                }
+                engine.step(MazeTopology.DIR_X[dir], MazeTopology.DIR_Y[dir]);
+                // A third of the ticks send no frame; their changes must arrive with the next one.
+                if (random.nextInt(3) != 0) {
+                    frame.clear();
+                    encoder.write(engine, frame);
+                    frame.flip();
+                    int length = frame.remaining();
+                    assertEquals(length - Integer.BYTES, frame.getInt(0), "length prefix");
+                    mirror.apply(frame);
+                    assertEquals(length, frame.position(), "frame not read to its end");
+                    assertMirrors(engine, mirror, "tick " + tick);
+                }
+                if (engine.isFinished()) {
+                    engine.reset(tick);
+                    encoder.invalidate();
+                }
+            }
+        }
+    }
+
+    // Asserts that a mirror holds the engine's current state.
+    static void assertMirrors(GameEngine engine, StateMirror mirror, String where) {
+        assertTrue(mirror.isSynced(), where + ": not synced");
+        assertEquals((int) engine.getTickCount(), mirror.getTick(), where + ": tick");
+        assertEquals(engine.getScore(), mirror.getScore(), where + ": score");
+        assertEquals(StateEncoder.statusOf(engine), mirror.getStatus(), where + ": status");
+        assertEquals(engine.getPowerTimer(), mirror.getPowerTimer(), where + ": power timer");
+        assertEquals(engine.getPacman().getX(), mirror.getPacmanX(), where + ": Pacman x");
+        assertEquals(engine.getPacman().getY(), mirror.getPacmanY(), where + ": Pacman y");
+        GhostPool pool = engine.getGhostPool();
+        assertEquals(pool.size(), mirror.getGhostCount(), where + ": ghost count");
+        for (int g = 0; g < pool.size(); g++) {
+            assertEquals(pool.getX(g), mirror.getGhostX(g), where + ": ghost " + g + " x");
+            assertEquals(pool.getY(g), mirror.getGhostY(g), where + ": ghost " + g + " y");
+            assertEquals(StateEncoder.ghostFlags(pool, g), mirror.getGhostFlags(g), where + ": ghost " + g + " flags");
+        }
+        for (int w = 0; w < engine.getPellets().wordCount(); w++) {
+            assertEquals(engine.getPellets().word(w), mirror.getPellets().word(w), where + ": pellets");
+            assertEquals(engine.getBigPellets().word(w), mirror.getBigPellets().word(w), where + ": power pellets");
+        }
+    }
+}